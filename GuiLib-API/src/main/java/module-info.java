@@ -10,6 +10,7 @@ module xyz.janboerman.guilib.api {
     exports xyz.janboerman.guilib.api.mask.patterns;
     exports xyz.janboerman.guilib.api.animate;
     exports xyz.janboerman.guilib.api.util;
+    exports xyz.janboerman.guilib.api.schedule;
 
     opens xyz.janboerman.guilib.api;
 }
\ No newline at end of file
@@ -1,16 +1,25 @@
 package xyz.janboerman.guilib.api;
 
+import org.bukkit.entity.HumanEntity;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryEvent;
 import org.bukkit.event.inventory.InventoryOpenEvent;
 import org.bukkit.event.inventory.InventoryType;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.InventoryView;
+import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
+import xyz.janboerman.guilib.api.schedule.GuiScheduler;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * An InventoryHolder for GUIs.
@@ -23,16 +32,38 @@ import java.util.Objects;
  * <p>
  * If you just need a menu with buttons, then {@link xyz.janboerman.guilib.api.menu.MenuHolder} is
  * a suitable candidate for your needs.
+ * <p>
+ * Guis that are created ahead of time can be created lazily, see {@link #GuiInventoryHolder(GuiListener, Plugin, int, String, boolean)}.
  *
  * @param <P> your Plugin type
  * @see xyz.janboerman.guilib.api.menu.MenuHolder
  */
 public abstract class GuiInventoryHolder<P extends Plugin> implements InventoryHolder {
     
-    private final Inventory inventory;
+    private Inventory inventory;
     private final P plugin;
+
+    //the shape and the contents of the inventory while it is not created, see the lazy constructors.
+    private boolean recreatable;
+    private InventoryType lazyType;
+    private String lazyTitle;
+    private ItemStack[] lazyContents;
+    private boolean releaseWhenClosed;
+
+    //the number of players that view this gui. Maintained by the GuiListener, on the threads of the viewers on region-threaded servers.
+    private final AtomicInteger viewerCount = new AtomicInteger();
+    //the players that opened this gui, so that work for the gui can be scheduled on the thread of a viewer.
+    private final List<HumanEntity> viewers = new CopyOnWriteArrayList<>();
+    //whether this gui was opened before, so that guis that were closed can be told apart from guis that were not opened yet.
+    private volatile boolean viewedBefore;
     protected final GuiListener guiListener;
 
+    //Forwards events to this holder when a GuiListener from another (relocated) copy of GuiLib dispatches them. See GuiListener#registerFederated.
+    //Referenced strongly by the holder because the other listener only references it weakly.
+    final Consumer<InventoryEvent> federationDispatcher = this::dispatchFederated;
+    //Set when the gui is unregistered, so that the GuiListener drops its events. See GuiListener#unregisterGui.
+    volatile boolean tombstoned;
+
     /**
      * Constructs a new GuiInventoryHolder for your plugin with the given inventory type and title.
      * @param plugin your plugin
@@ -232,17 +263,242 @@ public abstract class GuiInventoryHolder<P extends Plugin> implements InventoryH
         guiListener.registerGui(this, inventory); //implicit null check
     }
 
+    /**
+     * Constructs a new chest-GuiInventoryHolder for your plugin with the given size and title.
+     * <p>
+     * A lazy gui does not create its inventory right away. Until the inventory is created, its contents are kept in a plain array,
+     * and the inventory is only created and registered when {@link #getInventory()} is called for the first time, which is at the latest when the gui is opened.
+     * This makes guis that are built ahead of time, but that are possibly never opened, cheap to keep around.
+     * Lazy guis can also release their inventory once it's closed, see {@link #setReleaseWhenClosed(boolean)}.
+     *
+     * @param guiListener the listener that invokes the {@link #onOpen(InventoryOpenEvent)},
+     * {@link #onClick(InventoryClickEvent)} and {@link #onClose(InventoryCloseEvent)} methods
+     * @param plugin your plugin
+     * @param size the chest size (should be a multiple of 9 and ranging from 9 to 54)
+     * @param title the title, or null for the default title
+     * @param lazy true if the inventory should be created when it is needed, false to create it right away
+     * @throws IllegalArgumentException if the size is not a multiple of 9 between 9 and 54
+     */
+    public GuiInventoryHolder(GuiListener guiListener, P plugin, int size, String title, boolean lazy) throws IllegalArgumentException {
+        this.guiListener = Objects.requireNonNull(guiListener, "GuiListener cannot be null");
+        this.plugin = Objects.requireNonNull(plugin, "Plugin cannot be null");
+        //the server only checks the size when the inventory is created, which for lazy guis can be long after this constructor.
+        if (size < 9 || size > 54 || size % 9 != 0) throw new IllegalArgumentException("Size must be a multiple of 9 between 9 and 54: " + size);
+
+        this.recreatable = true;
+        this.lazyTitle = title;
+        this.lazyContents = new ItemStack[size];
+        if (!lazy) getInventory();
+    }
+
+    /**
+     * Constructs a new GuiInventoryHolder for your plugin with the given inventory type and title.
+     * @param guiListener the listener that invokes the {@link #onOpen(InventoryOpenEvent)},
+     * {@link #onClick(InventoryClickEvent)} and {@link #onClose(InventoryCloseEvent)} methods
+     * @param plugin your plugin
+     * @param type the inventory type
+     * @param title the title, or null for the default title
+     * @param lazy true if the inventory should be created when it is needed, false to create it right away
+     * @see #GuiInventoryHolder(GuiListener, Plugin, int, String, boolean)
+     */
+    public GuiInventoryHolder(GuiListener guiListener, P plugin, InventoryType type, String title, boolean lazy) {
+        this.guiListener = Objects.requireNonNull(guiListener, "GuiListener cannot be null");
+        this.plugin = Objects.requireNonNull(plugin, "Plugin cannot be null");
+
+        this.recreatable = true;
+        this.lazyType = Objects.requireNonNull(type, "InventoryType cannot be null");
+        this.lazyTitle = title;
+        this.lazyContents = new ItemStack[type.getDefaultSize()];
+        if (!lazy) getInventory();
+    }
+
     /**
      * Get the inventory associated with this gui holder.
      * Subclasses that override this method should always return
      * {@code super.getInventory();} with a cast to a custom inventory type.
+     * <p>
+     * If this gui was created lazily and its inventory has not been created yet, then it is created and registered now.
      * @return the inventory
      */
     @Override
     public Inventory getInventory() {
+        Inventory inventory = this.inventory;
+        if (inventory == null) inventory = materialize();
+        return inventory;
+    }
+
+    private Inventory materialize() {
+        Inventory inventory;
+        if (lazyType != null) {
+            inventory = lazyTitle == null
+                    ? plugin.getServer().createInventory(this, lazyType)
+                    : plugin.getServer().createInventory(this, lazyType, lazyTitle);
+        } else {
+            inventory = lazyTitle == null
+                    ? plugin.getServer().createInventory(this, lazyContents.length)
+                    : plugin.getServer().createInventory(this, lazyContents.length, lazyTitle);
+        }
+
+        ItemStack[] contents = lazyContents;
+        if (contents.length != inventory.getSize()) contents = Arrays.copyOf(contents, inventory.getSize());
+        inventory.setContents(contents);
+
+        this.inventory = inventory;
+        this.lazyContents = null;
+        if (!tombstoned) guiListener.registerGui(this, inventory);
         return inventory;
     }
 
+    /**
+     * Tests whether the inventory of this gui has been created.
+     * This is always the case for guis that were not created lazily.
+     * @return true if the inventory exists, false if the contents are still kept in a plain array
+     * @see #GuiInventoryHolder(GuiListener, Plugin, int, String, boolean)
+     */
+    public final boolean isInventoryMaterialized() {
+        return inventory != null;
+    }
+
+    /**
+     * Get the size of the inventory of this gui, without creating the inventory.
+     * @return the size
+     */
+    public final int getInventorySize() {
+        Inventory inventory = this.inventory;
+        return inventory == null ? lazyContents.length : inventory.getSize();
+    }
+
+    /**
+     * Set whether this gui releases its inventory after its last viewer closed it.
+     * The contents are kept, and a new inventory is created when the gui is opened again.
+     * Only guis that were created by one of the lazy constructors can release their inventory.
+     * @param releaseWhenClosed true to release the inventory when it's no longer viewed, otherwise false
+     * @throws IllegalStateException if this gui was not created by a lazy constructor
+     * @see #GuiInventoryHolder(GuiListener, Plugin, int, String, boolean)
+     */
+    public void setReleaseWhenClosed(boolean releaseWhenClosed) throws IllegalStateException {
+        if (!recreatable) throw new IllegalStateException("Only guis created by a lazy constructor can release their inventory");
+        this.releaseWhenClosed = releaseWhenClosed;
+    }
+
+    /**
+     * Tests whether this gui releases its inventory after its last viewer closed it.
+     * @return true if the inventory is released when it's no longer viewed, otherwise false
+     * @see #setReleaseWhenClosed(boolean)
+     */
+    public boolean isReleasingWhenClosed() {
+        return releaseWhenClosed;
+    }
+
+    /**
+     * Get the number of players that are viewing this gui.
+     * Unlike the viewers of the inventory, this does not create the inventory of a lazy gui.
+     * @return the number of viewers
+     */
+    public final int getViewerCount() {
+        return viewerCount.get();
+    }
+
+    /**
+     * Get one of the players that are viewing this gui.
+     * Unlike the viewers of the inventory, this can be called from any thread, and does not create the inventory of a lazy gui.
+     * On region-threaded servers, tasks that change the contents of this gui should be scheduled for this player,
+     * see {@link GuiScheduler#runTask(org.bukkit.entity.Entity, Runnable)}.
+     * @return a viewer, or null if nobody is viewing this gui
+     */
+    public final HumanEntity getViewer() {
+        for (HumanEntity viewer : viewers) {
+            return viewer;
+        }
+        return null;
+    }
+
+    /**
+     * Tests whether a player has viewed this gui before. Together with {@link #getViewerCount()},
+     * this tells apart guis that were closed from guis that were not opened yet.
+     * @return true if this gui was opened at least once, otherwise false
+     */
+    public final boolean wasViewed() {
+        return viewedBefore;
+    }
+
+    /**
+     * Called when the first player starts viewing this gui, after the {@link InventoryOpenEvent} was called.
+     * At this point the player has not received the contents of the inventory yet,
+     * so this is the moment to render contents that were not rendered while nobody was looking.
+     * <p>
+     * This method is intended to be overridden by your subclass.
+     */
+    protected void onViewed() {
+    }
+
+    //called by the GuiListener after the inventory was opened.
+    void opened(HumanEntity viewer) {
+        viewers.add(viewer);
+        viewedBefore = true;
+        if (viewerCount.getAndIncrement() == 0) onViewed();
+    }
+
+    //called by the GuiListener after the inventory was closed. The viewer is only removed after the event, so check again in the next tick.
+    //the inventory belongs to the thread of the viewer. if the viewer left in the meantime, nobody owns it anymore.
+    void closed(HumanEntity viewer) {
+        viewers.remove(viewer);
+        viewerCount.getAndUpdate(count -> count > 0 ? count - 1 : 0);
+
+        if (releaseWhenClosed && plugin.isEnabled()) {
+            GuiScheduler scheduler = GuiScheduler.of(plugin);
+            scheduler.runTask(viewer, this::release, () -> scheduler.runTask(this::release));
+        }
+    }
+
+    private void release() {
+        Inventory inventory = this.inventory;
+        if (inventory == null || !releaseWhenClosed || !inventory.getViewers().isEmpty()) return;
+
+        this.lazyContents = inventory.getContents();
+        this.inventory = null;
+        guiListener.releaseGui(this, inventory);
+    }
+
+    /**
+     * Get the contents of this gui. Does not create the inventory of a lazy gui.
+     * @return a new array containing the item stacks in this gui
+     */
+    protected final ItemStack[] getContents() {
+        Inventory inventory = this.inventory;
+        return inventory == null ? lazyContents.clone() : inventory.getContents();
+    }
+
+    /**
+     * Set the contents of this gui. Does not create the inventory of a lazy gui.
+     * @param contents the item stacks
+     */
+    protected final void setContents(ItemStack[] contents) {
+        Inventory inventory = this.inventory;
+        if (inventory == null) {
+            for (int slot = 0; slot < lazyContents.length; slot++) {
+                ItemStack stack = slot < contents.length ? contents[slot] : null;
+                lazyContents[slot] = stack == null ? null : stack.clone();
+            }
+        } else {
+            inventory.setContents(contents);
+        }
+    }
+
+    /**
+     * Set the item stack in a slot of this gui. Does not create the inventory of a lazy gui.
+     * @param slot the slot
+     * @param stack the item stack, or null to clear the slot
+     */
+    protected final void setItem(int slot, ItemStack stack) {
+        Inventory inventory = this.inventory;
+        if (inventory == null) {
+            lazyContents[slot] = stack == null ? null : stack.clone();
+        } else {
+            inventory.setItem(slot, stack);
+        }
+    }
+
     /**
      * Gets the plugin associated with this gui holder.
      * @return the plugin
@@ -251,6 +507,11 @@ public abstract class GuiInventoryHolder<P extends Plugin> implements InventoryH
         return plugin;
     }
 
+    private void dispatchFederated(InventoryEvent event) {
+        guiListener.delegateEvent(this, event);
+        guiListener.trackFederated(this, event);
+    }
+
     /**
      * Called when the corresponding InventoryView closes.
      * <p>
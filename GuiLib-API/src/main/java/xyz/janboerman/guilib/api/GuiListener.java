@@ -1,5 +1,7 @@
 package xyz.janboerman.guilib.api;
 
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
@@ -8,11 +10,28 @@ import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryDragEvent;
 import org.bukkit.event.inventory.InventoryEvent;
 import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.server.ServiceUnregisterEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.RegisteredServiceProvider;
+import org.bukkit.plugin.ServicePriority;
+import org.bukkit.plugin.ServicesManager;
+import xyz.janboerman.guilib.api.schedule.GuiScheduler;
+import xyz.janboerman.guilib.util.PluginDisableHooks;
+import xyz.janboerman.guilib.util.WeakIdentityRegistry;
 
-import java.lang.ref.WeakReference;
-import java.util.WeakHashMap;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
 import java.util.function.Consumer;
 
 /**
@@ -28,14 +47,47 @@ import java.util.function.Consumer;
  *     }
  *     </code>
  * </pre>
+ * If multiple plugins on the server shade GuiLib, consider using {@link #registerFederated(Plugin)} instead,
+ * so that only one GuiListener handles each inventory event.
+ * <p>
  * If instead you decide to use GuiLib as a runtime dependency and put the jar in your plugins folder, GuiLib registers this listener itself.
  */
 public class GuiListener implements Listener {
 
+    /**
+     * The version of the protocol that GuiListeners of different (relocated) copies of GuiLib use to federate.
+     * Listeners only federate with listeners that speak the same protocol version.
+     *
+     * @see #registerFederated(Plugin)
+     */
+    public static final int FEDERATION_PROTOCOL = 1;
+
     private static final GuiListener INSTANCE = new GuiListener();
 
     //Does not contain inventories whose holders are GuiInventoryHolders. See CraftInventoryCreator.
-    private final WeakHashMap<Inventory, WeakReference<GuiInventoryHolder<?>>> guiInventories = new WeakHashMap<>();
+    //Inventories are compared by identity, lookups are lock-free so that guis can be registered from any thread.
+    private final WeakIdentityRegistry<Inventory, GuiInventoryHolder<?>> guiInventories = new WeakIdentityRegistry<>();
+
+    //For every InventoryType, a bitmask of inventory sizes for which a gui was ever registered. Sizes of 63 and up share the last bit.
+    //Inventories whose type and size were never registered can't be guis, so we don't need to call Inventory#getHolder() for them,
+    //which can be expensive for block inventories on CraftBukkit.
+    private final AtomicLongArray registeredShapes = new AtomicLongArray(InventoryType.values().length);
+    private final LongAdder prefilterRejections = new LongAdder();
+    private final LongAdder prefilterPasses = new LongAdder();
+    private final LongAdder prefilterFalsePositives = new LongAdder();
+
+    //When we dispatch for other copies of GuiLib: the inventories they registered, and the plugins that use us.
+    private final WeakIdentityRegistry<Inventory, Consumer<? super InventoryEvent>> foreignInventories = new WeakIdentityRegistry<>();
+    private final Set<Plugin> federationMembers = ConcurrentHashMap.newKeySet();
+    //When we forward to another copy of GuiLib: the plugin that registered us, the other listener, and the registrar it gave us.
+    private Plugin federationPlugin;
+    private volatile Object federationPrimary;
+    private volatile BiPredicate<Inventory, Consumer<? super InventoryEvent>> federationRegistrar;
+
+    private final OpenGuiIndex openGuis = new OpenGuiIndex();
+    //Greater than zero while proxy events are being called on the current thread. Proxy events don't change the open-gui index.
+    //Region-threaded servers call events on multiple threads at once, so every thread has its own depth.
+    private final ThreadLocal<int[]> proxyDepth = ThreadLocal.withInitial(() -> new int[1]);
 
     private GuiListener() {}
 
@@ -50,31 +102,82 @@ public class GuiListener implements Listener {
     // ===== registering stuff =====
 
     /**
-     * Registers an inventory gui.
+     * Registers an inventory gui. This method is thread-safe.
+     * A gui that was unregistered using {@link #unregisterGui(GuiInventoryHolder)} can be registered again using this method.
      *
      * @param holder the gui holder
      * @param inventory the inventory that holds the gui item stacks
      * @return true if the gui was registered successfully, otherwise false
      */
     public boolean registerGui(GuiInventoryHolder<?> holder, Inventory inventory) {
+        recordShape(inventory);
+        holder.tombstoned = false;
+
+        BiPredicate<Inventory, Consumer<? super InventoryEvent>> registrar = federationRegistrar;
+        if (registrar != null) registrar.test(inventory, holder.federationDispatcher);
+
         if (holder == inventory.getHolder()) return true; //yes, reference equality
 
-        return guiInventories.putIfAbsent(inventory, new WeakReference<>(holder)) == null;
+        return guiInventories.putIfAbsent(inventory, holder);
+    }
+
+    /**
+     * Unregisters a gui. After this, events for the gui are no longer dispatched, except for the InventoryCloseEvents of the players that are still viewing it.
+     * Because the holder of an Inventory can't be unset, the holder is marked as unregistered instead.
+     * <p>
+     * Players that are viewing the gui's inventory are closed in the next tick, on the thread of each player.
+     * Inventories can't be closed while an InventoryClickEvent is being called, so this method can be called from the click handlers of the gui itself.
+     * A lazy gui whose inventory was not created yet is never registered, see {@link GuiInventoryHolder#GuiInventoryHolder(GuiListener, Plugin, int, String, boolean)}.
+     *
+     * @param holder the gui holder
+     * @return true if the gui was registered before, otherwise false
+     */
+    public boolean unregisterGui(GuiInventoryHolder<?> holder) {
+        if (holder.tombstoned) return false;
+        if (!holder.isInventoryMaterialized()) {
+            //lazy guis are registered when their inventory is created, so there is nothing to close or remove yet.
+            //the tombstone keeps the inventory from being registered when it is created later.
+            holder.tombstoned = true;
+            return false;
+        }
+
+        Inventory inventory = holder.getInventory();
+        holder.tombstoned = true;
+        guiInventories.remove(inventory, holder);
+
+        GuiScheduler scheduler = GuiScheduler.of(holder.getPlugin());
+        for (HumanEntity viewer : new ArrayList<>(inventory.getViewers())) {
+            scheduler.runTask(viewer, () -> {
+                if (viewer.getOpenInventory().getTopInventory() == inventory) viewer.closeInventory();
+            });
+        }
+
+        BiPredicate<Inventory, Consumer<? super InventoryEvent>> registrar = federationRegistrar;
+        if (registrar != null) registrar.test(inventory, null);
+
+        return true;
+    }
+
+    //called when a lazy gui releases its inventory. Unlike unregisterGui, the gui stays usable and registers its next inventory.
+    void releaseGui(GuiInventoryHolder<?> holder, Inventory inventory) {
+        guiInventories.remove(inventory, holder);
+
+        BiPredicate<Inventory, Consumer<? super InventoryEvent>> registrar = federationRegistrar;
+        if (registrar != null) registrar.test(inventory, null);
     }
 
     /**
      * Substitute for {@link Inventory#getHolder()} for gui inventories.
      * @param inventory the inventory
-     * @return the holder - or null if no holder was registered with the inventory.
+     * @return the holder - or null if no holder was registered with the inventory, or if the holder was unregistered.
      */
     public GuiInventoryHolder<?> getHolder(Inventory inventory) {
         InventoryHolder holder = inventory.getHolder();
-        if (holder instanceof GuiInventoryHolder) return (GuiInventoryHolder<?>) holder;
+        GuiInventoryHolder<?> guiHolder = holder instanceof GuiInventoryHolder
+                ? (GuiInventoryHolder<?>) holder
+                : guiInventories.get(inventory); //can still be null
 
-        WeakReference<GuiInventoryHolder<?>> reference = guiInventories.get(inventory);
-        if (reference == null) return null;
-
-        return reference.get(); //can still be null
+        return guiHolder == null || guiHolder.tombstoned ? null : guiHolder;
     }
 
     /**
@@ -98,16 +201,410 @@ public class GuiListener implements Listener {
        return getHolder(inventory) != null;
     }
 
-    // We cannot ever make an unregisterGui method because to do that we would need to unset the GuiInventoryHolder from the Inventory.
-    // So until such a method is added to bukkit's api, this is impossible to do without nms/reflection hacks.
+    // ===== federation stuff =====
+
+    /**
+     * Registers this listener such that it federates with the GuiListeners of other (relocated) copies of GuiLib.
+     * <p>
+     * If another copy of GuiLib already published its GuiListener with the same {@link #FEDERATION_PROTOCOL},
+     * then this listener forwards all guis that are registered from now on to that listener, and does not listen to inventory events itself.
+     * That way every inventory event is resolved only once, no matter how many plugins shade GuiLib.
+     * Otherwise this listener is registered for events and published via the {@link ServicesManager} so that other copies can use it.
+     * <p>
+     * When the listener that we forward to is unregistered (for example because its plugin is disabled), this listener registers itself for events again.
+     * Call this method in your onEnable before you create any guis.
+     *
+     * @param plugin your plugin
+     * @return true if this listener forwards its guis to the listener of another copy of GuiLib, false if this listener handles events itself
+     */
+    public synchronized boolean registerFederated(Plugin plugin) {
+        Objects.requireNonNull(plugin, "plugin cannot be null");
+        if (federationPlugin != null) return isFederationMember();
+        federationPlugin = plugin;
+
+        if (joinFederation(plugin.getServer().getServicesManager())) {
+            plugin.getServer().getPluginManager().registerEvents(new FederationWatcher(), plugin);
+            return true;
+        } else {
+            publishFederation();
+            return false;
+        }
+    }
+
+    /**
+     * Accepts the GuiListener of another (relocated) copy of GuiLib into this listener's federation.
+     * <p>
+     * This method is called reflectively by {@link #registerFederated(Plugin)}, which is why it only uses JDK and Bukkit types.
+     * The returned registrar registers an inventory with a callback that dispatches inventory events to the gui of the other copy.
+     * When the callback is null, the inventory is unregistered instead. Callbacks are referenced weakly.
+     *
+     * @param member the plugin that registered the other listener
+     * @return the registrar
+     */
+    public BiPredicate<Inventory, Consumer<? super InventoryEvent>> acceptFederationMember(Plugin member) {
+        federationMembers.add(Objects.requireNonNull(member, "member cannot be null"));
+
+        return (inventory, dispatcher) -> {
+            if (dispatcher == null) return foreignInventories.remove(inventory) != null;
+
+            recordShape(inventory);
+            return foreignInventories.putIfAbsent(inventory, dispatcher);
+        };
+    }
+
+    /**
+     * Get the number of GuiListeners of other copies of GuiLib that forward their guis to this listener.
+     * This is the number of event dispatchers that were collapsed into this one.
+     * @return the number of federated listeners
+     */
+    public int getFederatedListenerCount() {
+        return federationMembers.size();
+    }
+
+    /**
+     * Tests whether this listener forwards its guis to the GuiListener of another copy of GuiLib.
+     * @return true if this listener is a member of another listener's federation, otherwise false
+     */
+    public boolean isFederationMember() {
+        return federationRegistrar != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean joinFederation(ServicesManager servicesManager) {
+        for (Class<?> service : servicesManager.getKnownServices()) {
+            //relocated copies of this class have the same simple name.
+            if (service == GuiListener.class || !GuiListener.class.getSimpleName().equals(service.getSimpleName())) continue;
+
+            try {
+                if (service.getField("FEDERATION_PROTOCOL").getInt(null) != FEDERATION_PROTOCOL) continue;
+
+                RegisteredServiceProvider<?> registration = servicesManager.getRegistration(service);
+                if (registration == null) continue;
+
+                Object primary = registration.getProvider();
+                Object registrar = service.getMethod("acceptFederationMember", Plugin.class).invoke(primary, federationPlugin);
+                if (!(registrar instanceof BiPredicate)) continue;
+
+                federationPrimary = primary;
+                federationRegistrar = (BiPredicate<Inventory, Consumer<? super InventoryEvent>>) registrar;
+                return true;
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                //not a listener we can federate with, try the next one.
+            }
+        }
+
+        return false;
+    }
+
+    private void publishFederation() {
+        federationPlugin.getServer().getPluginManager().registerEvents(this, federationPlugin);
+        federationPlugin.getServer().getServicesManager().register(GuiListener.class, this, federationPlugin, ServicePriority.Normal);
+    }
+
+    private synchronized void leaveFederation() {
+        federationRegistrar = null;
+        federationPrimary = null;
+
+        //guis that we forwarded are also registered with us, so we can just take over.
+        if (federationPlugin.isEnabled()) {
+            publishFederation();
+        }
+    }
+
+    private final class FederationWatcher implements Listener {
+        @EventHandler
+        public void onServiceUnregister(ServiceUnregisterEvent event) {
+            Object primary = federationPrimary;
+            if (primary != null && event.getProvider().getProvider() == primary) {
+                leaveFederation();
+            }
+        }
+
+        //while we forward our guis, we are not registered for events ourselves, but our guis and registries still need to be cleaned up.
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onPluginDisable(PluginDisableEvent event) {
+            if (isFederationMember()) GuiListener.this.onPluginDisable(event);
+        }
+    }
+
+    // ===== open gui stuff =====
+
+    /**
+     * Get the gui that the player is currently viewing.
+     * @param player the player
+     * @return the gui, or null if the player is not viewing a gui
+     */
+    public GuiInventoryHolder<?> getOpenGui(HumanEntity player) {
+        return getOpenGui(player.getUniqueId());
+    }
+
+    /**
+     * Get the gui that the player with the given unique id is currently viewing.
+     * @param player the player's unique id
+     * @return the gui, or null if the player is not viewing a gui
+     */
+    public GuiInventoryHolder<?> getOpenGui(UUID player) {
+        return openGuis.get(player);
+    }
+
+    /**
+     * Count the number of players that are viewing a gui of exactly the given class.
+     * @param guiClass the class of the guis
+     * @return the number of players viewing such a gui
+     */
+    public int countOpenGuis(Class<? extends GuiInventoryHolder> guiClass) {
+        return openGuis.count(guiClass);
+    }
+
+    /**
+     * Count the number of players that are viewing a gui.
+     * @return the number of players viewing a gui
+     */
+    public int countOpenGuis() {
+        return openGuis.count();
+    }
+
+    /**
+     * Closes all guis owned by the plugin. This method must be called on the main thread.
+     * On region-threaded servers, guis of players that are owned by another thread are closed on the player's thread in the next tick.
+     * @param plugin the plugin that owns the guis
+     * @return the number of players whose gui was closed or is going to be closed
+     */
+    public int closeGuis(Plugin plugin) {
+        //the tasks of a plugin that is being disabled are cancelled, so schedule them for the plugin that registered this listener if possible.
+        Plugin host = federationPlugin;
+        GuiScheduler scheduler = GuiScheduler.of(host != null && host != plugin && host.isEnabled() ? host : plugin);
+
+        int closed = 0;
+        for (UUID uuid : openGuis.getViewers(plugin)) {
+            GuiInventoryHolder<?> holder = openGuis.get(uuid);
+            if (holder == null || holder.getPlugin() != plugin) continue;
+
+            Player player = plugin.getServer().getPlayer(uuid);
+            if (player != null) {
+                Runnable close = () -> {
+                    if (getHolder(player.getOpenInventory().getTopInventory()) == holder) {
+                        player.closeInventory(); //removes the player from the index
+                    }
+                };
+                if (scheduler.isOwnedByCurrentThread(player)) {
+                    if (getHolder(player.getOpenInventory().getTopInventory()) == holder) closed += 1;
+                    close.run();
+                } else {
+                    scheduler.runTask(player, close);
+                    closed += 1;
+                }
+            }
+            openGuis.closed(uuid);
+        }
+        return closed;
+    }
+
+    /**
+     * Calls an event that proxies an inventory event for a gui embedded in another gui, such as the pages of a {@link xyz.janboerman.guilib.api.menu.PageMenu}.
+     * Unlike events called by the server, proxy events do not change which gui a player is viewing according to {@link #getOpenGui(HumanEntity)}.
+     * @param plugin the plugin that calls the event
+     * @param event the proxy event
+     */
+    public void callProxyEvent(Plugin plugin, InventoryEvent event) {
+        int[] depth = proxyDepth.get();
+        depth[0] += 1;
+        try {
+            plugin.getServer().getPluginManager().callEvent(event);
+        } finally {
+            depth[0] -= 1;
+        }
+    }
+
+    private boolean isCallingProxyEvent() {
+        return proxyDepth.get()[0] > 0;
+    }
+
+    /**
+     * Records which gui a player opened. This is done at the monitor priority, so that opens cancelled by other listeners are not recorded.
+     * @param event the InventoryOpenEvent
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryOpened(InventoryOpenEvent event) {
+        if (isCallingProxyEvent()) return;
+
+        Inventory inventory = event.getInventory();
+        if (!mightBeGui(inventory)) return;
+
+        GuiInventoryHolder<?> guiHolder = getHolder(inventory);
+        if (guiHolder != null) {
+            openGuis.opened(event.getPlayer().getUniqueId(), guiHolder);
+            guiHolder.opened(event.getPlayer());
+        }
+    }
+
+    //called for our guis when the listener of another copy of GuiLib dispatched an event for them, see GuiInventoryHolder#dispatchFederated.
+    //that listener doesn't know our guis, so we keep track of who views them ourselves.
+    void trackFederated(GuiInventoryHolder<?> guiHolder, InventoryEvent event) {
+        if (isCallingProxyEvent()) return;
+
+        if (event instanceof InventoryOpenEvent) {
+            //events are dispatched to us at the high priority, so listeners at the highest priority can still cancel the open.
+            if (((InventoryOpenEvent) event).isCancelled()) return;
+            HumanEntity player = ((InventoryOpenEvent) event).getPlayer();
+            openGuis.opened(player.getUniqueId(), guiHolder);
+            guiHolder.opened(player);
+        } else if (event instanceof InventoryCloseEvent) {
+            guiHolder.closed(((InventoryCloseEvent) event).getPlayer());
+            openGuis.closed(((InventoryCloseEvent) event).getPlayer().getUniqueId());
+        }
+    }
+
+    /**
+     * Forgets the gui that a player was viewing when the player leaves.
+     * @param event the PlayerQuitEvent
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        openGuis.closed(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Closes the guis of a plugin that is disabled and drops them from the registry,
+     * removes the plugin from this listener's federation, and releases the work queues, schedulers and clocks of the plugin.
+     * @param event the PluginDisableEvent
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(PluginDisableEvent event) {
+        Plugin plugin = event.getPlugin();
+        federationMembers.remove(plugin);
+
+        closeGuis(plugin);
+        openGuis.forget(plugin);
+        guiInventories.removeIf(holder -> holder.getPlugin() == plugin);
+        PluginDisableHooks.run(plugin);
+    }
+
+    // ===== pre-filter stuff =====
+
+    private static long shapeBit(int size) {
+        return 1L << Math.min(size, 63);
+    }
+
+    private void recordShape(Inventory inventory) {
+        int index = inventory.getType().ordinal();
+        long bit = shapeBit(inventory.getSize());
+
+        long shapes;
+        while (((shapes = registeredShapes.get(index)) & bit) == 0) {
+            if (registeredShapes.compareAndSet(index, shapes, shapes | bit)) break;
+        }
+    }
+
+    private boolean mightBeGui(Inventory inventory) {
+        return (registeredShapes.get(inventory.getType().ordinal()) & shapeBit(inventory.getSize())) != 0;
+    }
+
+    /**
+     * Get the number of inventory events that were rejected by the pre-filter without looking up the inventory's holder.
+     * The pre-filter rejects inventories of which the combination of type and size was never registered as a gui.
+     * @return the number of rejected events
+     */
+    public long getPrefilterRejections() {
+        return prefilterRejections.sum();
+    }
+
+    /**
+     * Get the number of inventory events that passed the pre-filter.
+     * @return the number of events for which the inventory's holder was looked up
+     */
+    public long getPrefilterPasses() {
+        return prefilterPasses.sum();
+    }
+
+    /**
+     * Get the number of inventory events that passed the pre-filter, but whose inventory turned out not to be a gui.
+     * @return the number of false positives
+     */
+    public long getPrefilterFalsePositives() {
+        return prefilterFalsePositives.sum();
+    }
+
+    /**
+     * Get the fraction of non-gui inventory events that were rejected by the pre-filter.
+     * @return a number between 0 and 1, or NaN if no non-gui inventory events were seen yet
+     */
+    public double getPrefilterHitRate() {
+        long rejections = prefilterRejections.sum();
+        long nonGuiEvents = rejections + prefilterFalsePositives.sum();
+        return nonGuiEvents == 0 ? Double.NaN : (double) rejections / nonGuiEvents;
+    }
+
+    /**
+     * Resets the pre-filter counters.
+     */
+    public void resetPrefilterStatistics() {
+        prefilterRejections.reset();
+        prefilterPasses.reset();
+        prefilterFalsePositives.reset();
+    }
 
     // ===== event stuff =====
 
-    private void onGuiInventoryEvent(InventoryEvent event, Consumer<GuiInventoryHolder> action) {
-        GuiInventoryHolder<?> guiHolder = getHolder(event.getInventory());
+    //Resolves the gui that should handle the event, without allocating. Events for guis of other copies of GuiLib are dispatched here.
+    private GuiInventoryHolder<?> resolveGui(InventoryEvent event) {
+        Inventory inventory = event.getInventory();
+        if (!mightBeGui(inventory)) {
+            prefilterRejections.increment();
+            return null;
+        }
+
+        prefilterPasses.increment();
+        GuiInventoryHolder<?> guiHolder = getHolder(inventory);
+        if (guiHolder == null) {
+            Consumer<? super InventoryEvent> foreignDispatcher = foreignInventories.get(inventory);
+            if (foreignDispatcher != null) {
+                foreignDispatcher.accept(event);
+            } else {
+                prefilterFalsePositives.increment();
+            }
+            return null;
+        }
+
+        return guiHolder.getPlugin().isEnabled() ? guiHolder : null;
+    }
+
+    //guis are unregistered before their viewers are closed, but they still need to know that their viewers closed them.
+    private GuiInventoryHolder<?> resolveUnregisteredGui(InventoryCloseEvent event) {
+        Inventory inventory = event.getInventory();
+        if (!mightBeGui(inventory)) return null;
+
+        InventoryHolder holder = inventory.getHolder();
+        if (!(holder instanceof GuiInventoryHolder)) return null;
+
+        GuiInventoryHolder<?> guiHolder = (GuiInventoryHolder<?>) holder;
+        return guiHolder.tombstoned && guiHolder.getPlugin().isEnabled() ? guiHolder : null;
+    }
 
-        if (guiHolder != null && guiHolder.getPlugin().isEnabled()) {
-            action.accept(guiHolder);
+    /**
+     * Delegates an inventory event to a gui directly, without calling the event through the PluginManager.
+     * This is used by guis that embed other guis, such as {@link xyz.janboerman.guilib.api.menu.PageMenu}, and by the listeners of other copies of GuiLib.
+     * Just like events called by the server, InventoryClickEvents and InventoryDragEvents are cancelled before they are passed to the gui.
+     * Events for guis that are unregistered or whose plugin is disabled are ignored.
+     *
+     * @param guiHolder the gui
+     * @param event the event - its inventory should be the gui's inventory
+     */
+    public void delegateEvent(GuiInventoryHolder<?> guiHolder, InventoryEvent event) {
+        if (guiHolder.tombstoned || !guiHolder.getPlugin().isEnabled()) return;
+
+        if (event instanceof InventoryClickEvent) {
+            InventoryClickEvent clickEvent = (InventoryClickEvent) event;
+            clickEvent.setCancelled(true);
+            guiHolder.onClick(clickEvent);
+        } else if (event instanceof InventoryDragEvent) {
+            InventoryDragEvent dragEvent = (InventoryDragEvent) event;
+            dragEvent.setCancelled(true);
+            guiHolder.onDrag(dragEvent);
+        } else if (event instanceof InventoryOpenEvent) {
+            guiHolder.onOpen((InventoryOpenEvent) event);
+        } else if (event instanceof InventoryCloseEvent) {
+            guiHolder.onClose((InventoryCloseEvent) event);
         }
     }
 
@@ -117,7 +614,10 @@ public class GuiListener implements Listener {
      */
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onInventoryOpen(InventoryOpenEvent event) {
-        onGuiInventoryEvent(event, gui -> gui.onOpen(event));
+        GuiInventoryHolder<?> gui = resolveGui(event);
+        if (gui != null) {
+            gui.onOpen(event);
+        }
     }
 
     /**
@@ -127,10 +627,11 @@ public class GuiListener implements Listener {
      */
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onInventoryClick(InventoryClickEvent event) {
-        onGuiInventoryEvent(event, gui -> {
+        GuiInventoryHolder<?> gui = resolveGui(event);
+        if (gui != null) {
             event.setCancelled(true);
             gui.onClick(event);
-        });
+        }
     }
 
     /**
@@ -140,10 +641,11 @@ public class GuiListener implements Listener {
      */
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onInventoryDrag(InventoryDragEvent event) {
-        onGuiInventoryEvent(event, gui -> {
+        GuiInventoryHolder<?> gui = resolveGui(event);
+        if (gui != null) {
             event.setCancelled(true);
             gui.onDrag(event);
-        });
+        }
     }
 
     /**
@@ -152,7 +654,17 @@ public class GuiListener implements Listener {
      */
     @EventHandler(priority = EventPriority.HIGH)
     public void onInventoryClose(InventoryCloseEvent event) {
-        onGuiInventoryEvent(event, gui -> gui.onClose(event));
+        GuiInventoryHolder<?> gui = resolveGui(event);
+        if (gui == null) gui = resolveUnregisteredGui(event);
+        boolean proxy = isCallingProxyEvent();
+        if (gui != null) {
+            gui.onClose(event);
+            if (!proxy) gui.closed(event.getPlayer());
+        }
+
+        if (!proxy) {
+            openGuis.closed(event.getPlayer().getUniqueId());
+        }
     }
 
 }
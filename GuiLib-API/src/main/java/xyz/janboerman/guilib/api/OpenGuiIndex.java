@@ -0,0 +1,83 @@
+package xyz.janboerman.guilib.api;
+
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of which player is viewing which gui. Updated by the {@link GuiListener} on the main thread, can be queried from any thread.
+ */
+final class OpenGuiIndex {
+
+    private final Map<UUID, GuiInventoryHolder<?>> byPlayer = new ConcurrentHashMap<>();
+    private final Map<Plugin, Set<UUID>> byPlugin = new ConcurrentHashMap<>();
+    //entries are removed when their count drops to zero, so that the classes of disabled plugins are not kept alive.
+    private final Map<Class<?>, Integer> countByClass = new ConcurrentHashMap<>();
+
+    void opened(UUID player, GuiInventoryHolder<?> holder) {
+        GuiInventoryHolder<?> previous = byPlayer.put(player, holder);
+        if (previous == holder) return;
+
+        if (previous != null) unindex(player, previous);
+        byPlugin.computeIfAbsent(holder.getPlugin(), plugin -> ConcurrentHashMap.newKeySet()).add(player);
+        countByClass.merge(holder.getClass(), 1, Integer::sum);
+    }
+
+    GuiInventoryHolder<?> closed(UUID player) {
+        GuiInventoryHolder<?> holder = byPlayer.remove(player);
+        if (holder != null) unindex(player, holder);
+        return holder;
+    }
+
+    private void unindex(UUID player, GuiInventoryHolder<?> holder) {
+        Set<UUID> players = byPlugin.get(holder.getPlugin());
+        if (players != null) players.remove(player);
+
+        decrementCount(holder.getClass());
+    }
+
+    private void decrementCount(Class<?> guiClass) {
+        countByClass.computeIfPresent(guiClass, (clazz, count) -> count > 1 ? count - 1 : null);
+    }
+
+    GuiInventoryHolder<?> get(UUID player) {
+        return byPlayer.get(player);
+    }
+
+    List<UUID> getViewers(Plugin plugin) {
+        Set<UUID> players = byPlugin.get(plugin);
+        return players == null ? Collections.emptyList() : new ArrayList<>(players);
+    }
+
+    int count(Class<?> guiClass) {
+        Integer count = countByClass.get(guiClass);
+        return count == null ? 0 : count;
+    }
+
+    int count() {
+        return byPlayer.size();
+    }
+
+    void forget(Plugin plugin) {
+        Set<UUID> players = byPlugin.remove(plugin);
+        if (players != null) {
+            for (UUID player : players) {
+                GuiInventoryHolder<?> holder = byPlayer.get(player);
+                if (holder != null && holder.getPlugin() == plugin && byPlayer.remove(player, holder)) {
+                    decrementCount(holder.getClass());
+                }
+            }
+        }
+
+        //drop the classes that were loaded by the plugin, in case an open or close was missed.
+        ClassLoader classLoader = plugin.getClass().getClassLoader();
+        countByClass.keySet().removeIf(clazz -> clazz.getClassLoader() == classLoader);
+    }
+
+}
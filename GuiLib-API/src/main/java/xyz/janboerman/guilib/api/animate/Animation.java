@@ -1,7 +1,10 @@
 package xyz.janboerman.guilib.api.animate;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.UnaryOperator;
 
@@ -82,6 +85,138 @@ public interface Animation {
     public default Animation limit(int numberOfFrames) {
         return new LimitAnimation(numberOfFrames, this);
     }
+
+    /**
+     * Compiles the frames of this animation into frames that only update the slots that changed since the previous frame.
+     * The first frame still updates all of its slots. This animation is stepped through once, and is reset afterwards.
+     * <p>
+     * The compiled animation is only correct if nothing else changes the slots of the container while it plays.
+     * Frames that can't be compiled (see {@link Frame#isCompilable()}) are kept as they are, and the frame after them updates all of its slots again.
+     * <p>
+     * To compile an infinite animation, the number of frames must be limited. The compiled animation is finite,
+     * use {@link #continuously()} on the compiled animation to loop it.
+     *
+     * @param maxFrames the maximum number of frames to compile
+     * @return the compiled animation
+     * @throws IllegalArgumentException if maxFrames is smaller than 1, or if this animation has no frames
+     */
+    public default Animation compileDeltas(int maxFrames) throws IllegalArgumentException {
+        return DeltaAnimation.compile(this, maxFrames);
+    }
+
+    /**
+     * Get an animation that shows the same frames as this animation, but that compiles every frame the first time it is shown (see {@link Frame#compile()}).
+     * Later passes over the frames, for example when the animation loops, apply the compiled frames.
+     * <p>
+     * Only use this for frames whose pattern and mask always return the same values, because compiled frames don't change anymore.
+     * Frames that can't be compiled (see {@link Frame#isCompilable()}) are shown as they are.
+     * Animations that don't keep their frames, such as {@link #infinite(Frame, UnaryOperator)}, are returned as they are.
+     *
+     * @return the animation that compiles its frames
+     */
+    public default Animation compileFrames() {
+        return this;
+    }
+}
+
+class DeltaAnimation implements Animation {
+
+    private final Frame<?, ?>[] frames;
+    private int currentIndex;
+
+    private DeltaAnimation(Frame<?, ?>[] frames) {
+        this.frames = frames;
+    }
+
+    static DeltaAnimation compile(Animation source, int maxFrames) {
+        Objects.requireNonNull(source, "source cannot be null");
+        if (maxFrames < 1) throw new IllegalArgumentException("maxFrames must be at least 1: " + maxFrames);
+
+        List<Frame<?, ?>> frames = new ArrayList<>();
+        //the item that was put in each slot most recently. slots that are not in the map have an unknown item.
+        Map<Integer, Object> state = new HashMap<>();
+        source.reset();
+        try {
+            while (frames.size() < maxFrames && source.hasNextFrame()) {
+                Frame<?, ?> frame = source.nextFrame();
+                if (frame.isCompilable()) {
+                    frames.add(diff(frame.compile(), state));
+                } else {
+                    //we don't know which slots this frame changes.
+                    frames.add(frame);
+                    state.clear();
+                }
+            }
+        } finally {
+            source.reset();
+        }
+
+        if (frames.isEmpty()) throw new IllegalArgumentException("animation has no frames");
+        return new DeltaAnimation(frames.toArray(new Frame<?, ?>[0]));
+    }
+
+    private static <Symbol, Item> CompiledFrame<Symbol, Item> diff(CompiledFrame<Symbol, Item> frame, Map<Integer, Object> state) {
+        int[] slots = new int[frame.slots.length];
+        Object[] items = new Object[frame.items.length];
+        int size = 0;
+        for (int i = 0; i < frame.slots.length; i++) {
+            Integer slot = frame.slots[i];
+            Object item = frame.items[i];
+            if (!state.containsKey(slot) || !Objects.equals(state.get(slot), item)) {
+                state.put(slot, item);
+                slots[size] = slot;
+                items[size] = item;
+                size += 1;
+            }
+        }
+
+        if (size == slots.length) return frame;
+        return new CompiledFrame<>(frame.getSource(), Arrays.copyOf(slots, size), Arrays.copyOf(items, size));
+    }
+
+    @Override
+    public void reset() {
+        currentIndex = 0;
+    }
+
+    @Override
+    public Frame<?, ?> nextFrame() {
+        return frames[currentIndex++];
+    }
+
+    @Override
+    public boolean hasNextFrame() {
+        return currentIndex < frames.length;
+    }
+
+    @Override
+    public Animation compileDeltas(int maxFrames) {
+        if (maxFrames >= frames.length) {
+            return new DeltaAnimation(frames);
+        } else {
+            return Animation.super.compileDeltas(maxFrames);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(currentIndex, Arrays.hashCode(frames));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) return true;
+        if (!(obj instanceof DeltaAnimation)) return false;
+
+        DeltaAnimation that = (DeltaAnimation) obj;
+        return this.currentIndex == that.currentIndex
+                && Arrays.equals(this.frames, that.frames);
+    }
+
+    @Override
+    public String toString() {
+        return "DeltaAnimation(currentIndex=" + currentIndex + ",frames=" + Arrays.toString(frames) + ")";
+    }
 }
 
 class LimitAnimation implements Animation {
@@ -129,6 +264,11 @@ class LimitAnimation implements Animation {
         }
     }
 
+    @Override
+    public Animation compileFrames() {
+        return new LimitAnimation(limit, wrapped.compileFrames(), count);
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(limit, wrapped, count);
@@ -177,6 +317,11 @@ class ConcatAnimation implements Animation {
         return one.hasNextFrame() || two.hasNextFrame();
     }
 
+    @Override
+    public Animation compileFrames() {
+        return new ConcatAnimation(one.compileFrames(), two.compileFrames());
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(one, two);
@@ -232,6 +377,11 @@ class ContinuousAnimation implements Animation {
         return this;
     }
 
+    @Override
+    public Animation compileFrames() {
+        return new ContinuousAnimation(wrapped.compileFrames());
+    }
+
     @Override
     public int hashCode() {
         return Objects.hashCode(wrapped);
@@ -319,10 +469,13 @@ class SimpleAnimation implements Animation {
 
     private int currentIndex;
     private final List<? extends Frame<?, ?>> frames;
+    /** The frames, compiled when they are shown for the first time. Null unless compiling was requested using {@link #compileFrames()} */
+    private final Frame<?, ?>[] compiled;
 
-    private SimpleAnimation(int index, List<? extends Frame<?, ?>> frames) {
+    private SimpleAnimation(int index, List<? extends Frame<?, ?>> frames, boolean compile) {
         this.currentIndex = index;
         this.frames = frames;
+        this.compiled = compile ? new Frame<?, ?>[frames.size()] : null;
     }
 
     SimpleAnimation(List<? extends Frame<?, ?>> frames) {
@@ -330,6 +483,7 @@ class SimpleAnimation implements Animation {
         if (frames.isEmpty()) throw new IllegalArgumentException("frames cannot be empty");
 
         this.frames = new ArrayList<>(frames);
+        this.compiled = null;
     }
 
     @Override
@@ -339,7 +493,16 @@ class SimpleAnimation implements Animation {
 
     @Override
     public Frame<?, ?> nextFrame() {
-        return frames.get(currentIndex++);
+        int index = currentIndex++;
+        if (compiled == null) return frames.get(index);
+
+        Frame<?, ?> frame = compiled[index];
+        if (frame == null) {
+            frame = frames.get(index);
+            if (frame.isCompilable()) frame = frame.compile();
+            compiled[index] = frame;
+        }
+        return frame;
     }
 
     @Override
@@ -349,13 +512,13 @@ class SimpleAnimation implements Animation {
 
     @Override
     public Animation andThen(Animation next) {
-        if (next instanceof SimpleAnimation) {
+        if (next instanceof SimpleAnimation && (this.compiled == null) == (((SimpleAnimation) next).compiled == null)) {
             SimpleAnimation that = (SimpleAnimation) next;
 
             ArrayList<Frame<?, ?>> newFrames = new ArrayList<>(this.frames.size() + that.frames.size());
             newFrames.addAll(this.frames);
             newFrames.addAll(that.frames);
-            return new SimpleAnimation(currentIndex, newFrames);
+            return new SimpleAnimation(currentIndex, newFrames, compiled != null);
         } else {
             return Animation.super.andThen(next);
         }
@@ -364,12 +527,17 @@ class SimpleAnimation implements Animation {
     @Override
     public Animation limit(int numberOfFrames) {
         if (numberOfFrames < frames.size()) {
-            return new SimpleAnimation(currentIndex, frames.subList(0, Math.min(frames.size(), numberOfFrames)));
+            return new SimpleAnimation(currentIndex, frames.subList(0, Math.min(frames.size(), numberOfFrames)), compiled != null);
         } else {
             return this;
         }
     }
 
+    @Override
+    public Animation compileFrames() {
+        return compiled != null ? this : new SimpleAnimation(currentIndex, frames, true);
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(currentIndex, frames);
@@ -0,0 +1,282 @@
+package xyz.janboerman.guilib.api.animate;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import xyz.janboerman.guilib.api.schedule.GuiScheduler;
+import xyz.janboerman.guilib.api.schedule.GuiTask;
+import xyz.janboerman.guilib.util.PluginDisableHooks;
+import xyz.janboerman.guilib.util.WeakIdentityRegistry;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * The clock that drives the {@link AnimationRunner}s of a plugin. A clock runs a single repeating task,
+ * and advances all animations that are due in one pass per tick. The task only runs while animations are playing.
+ * <p>
+ * Pending frames are kept in a hashed timing wheel, so scheduling and cancelling a frame takes constant time,
+ * no matter how many animations are playing.
+ * <p>
+ * Animations that are shown to a single player run on a clock of that player, so that region-threaded servers run them
+ * on the player's thread. A clock is not thread-safe, it must only be used from the thread that runs its task.
+ *
+ * @see #of(Plugin)
+ * @see #of(Plugin, Entity)
+ */
+public final class AnimationClock {
+
+    /** The number of buckets in the wheel. Frames that are due further ahead wrap around. */
+    private static final int WHEEL_SIZE = 64;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private static final Map<Plugin, AnimationClock> CLOCKS = new ConcurrentHashMap<>();
+    private static final Map<Plugin, WeakIdentityRegistry<Entity, AnimationClock>> VIEWER_CLOCKS = new ConcurrentHashMap<>();
+
+    static {
+        PluginDisableHooks.add(AnimationClock::discard);
+    }
+
+    private final Plugin plugin;
+    private final WeakReference<Entity> viewer;
+
+    private final Timer[] heads = new Timer[WHEEL_SIZE];
+    private final Timer[] tails = new Timer[WHEEL_SIZE];
+    private int scheduledCount;
+    private long currentTick;
+    private GuiTask task;
+
+    private long ticksRun, framesApplied;
+    private int framesLastTick, maxFramesPerTick;
+
+    private AnimationClock(Plugin plugin, Entity viewer) {
+        this.plugin = plugin;
+        this.viewer = viewer == null ? null : new WeakReference<>(viewer);
+    }
+
+    /**
+     * Get the clock of a plugin. Its task runs on the main thread, or on the global region thread of region-threaded servers.
+     * @param plugin the plugin
+     * @return the clock
+     */
+    public static AnimationClock of(Plugin plugin) {
+        Objects.requireNonNull(plugin, "Plugin cannot be null");
+        return CLOCKS.computeIfAbsent(plugin, p -> new AnimationClock(p, null));
+    }
+
+    /**
+     * Get the clock of a plugin for animations shown to a single player. Its task runs on the player's thread.
+     * @param plugin the plugin
+     * @param viewer the player
+     * @return the clock
+     */
+    public static AnimationClock of(Plugin plugin, Entity viewer) {
+        Objects.requireNonNull(plugin, "Plugin cannot be null");
+        Objects.requireNonNull(viewer, "Viewer cannot be null");
+
+        WeakIdentityRegistry<Entity, AnimationClock> clocks = VIEWER_CLOCKS.computeIfAbsent(plugin, p -> new WeakIdentityRegistry<>());
+        AnimationClock clock;
+        while ((clock = clocks.get(viewer)) == null) {
+            clock = new AnimationClock(plugin, viewer);
+            if (clocks.putIfAbsent(viewer, clock)) return clock;
+        }
+        return clock;
+    }
+
+    //called when the plugin is disabled. The clocks stop, and are dropped so that they don't keep the plugin alive across reloads.
+    private static void discard(Plugin plugin) {
+        AnimationClock clock = CLOCKS.remove(plugin);
+        if (clock != null) clock.cancelTask();
+
+        WeakIdentityRegistry<Entity, AnimationClock> clocks = VIEWER_CLOCKS.remove(plugin);
+        if (clocks != null) {
+            clocks.removeIf(viewerClock -> {
+                viewerClock.cancelTask();
+                return true;
+            });
+        }
+    }
+
+    private void cancelTask() {
+        GuiTask task = this.task;
+        if (task != null) task.cancel();
+    }
+
+    /**
+     * Schedules a frame on this clock.
+     * @param frame the code that shows the frame
+     * @param delay the delay in ticks. Frames without a delay run in the next tick.
+     * @param period the period in ticks at which the frame repeats, or 0 if the frame runs once
+     * @return the scheduled frame, which can be cancelled
+     */
+    GuiTask schedule(Runnable frame, long delay, long period) {
+        Timer timer = new Timer(frame, period);
+        insert(timer, currentTick + Math.max(1L, delay));
+
+        if (task == null || task.isCancelled()) {
+            GuiScheduler scheduler = GuiScheduler.of(plugin);
+            Entity entity = viewer == null ? null : viewer.get();
+            task = entity == null ? scheduler.runTaskTimer(this::tick, 1L, 1L) : scheduler.runTaskTimer(entity, this::tick, 1L, 1L);
+        }
+        return timer;
+    }
+
+    private void insert(Timer timer, long deadline) {
+        int bucket = (int) (deadline & WHEEL_MASK);
+        timer.deadline = deadline;
+        timer.bucket = bucket;
+        timer.previous = tails[bucket];
+        timer.next = null;
+        if (tails[bucket] == null) {
+            heads[bucket] = timer;
+        } else {
+            tails[bucket].next = timer;
+        }
+        tails[bucket] = timer;
+        timer.linked = true;
+        scheduledCount += 1;
+    }
+
+    private void unlink(Timer timer) {
+        int bucket = timer.bucket;
+        if (timer.previous == null) {
+            heads[bucket] = timer.next;
+        } else {
+            timer.previous.next = timer.next;
+        }
+        if (timer.next == null) {
+            tails[bucket] = timer.previous;
+        } else {
+            timer.next.previous = timer.previous;
+        }
+        timer.previous = timer.next = null;
+        timer.linked = false;
+        scheduledCount -= 1;
+    }
+
+    private void tick() {
+        currentTick += 1;
+        ticksRun += 1;
+
+        //take the due frames out of the bucket first, so that frames can be cancelled and scheduled while the frames run.
+        int bucket = (int) (currentTick & WHEEL_MASK);
+        Timer due = null, dueTail = null;
+        for (Timer timer = heads[bucket], next; timer != null; timer = next) {
+            next = timer.next;
+            if (timer.deadline <= currentTick) {
+                unlink(timer);
+                if (dueTail == null) {
+                    due = timer;
+                } else {
+                    dueTail.next = timer;
+                }
+                dueTail = timer;
+            }
+        }
+
+        int frames = 0;
+        for (Timer timer = due, next; timer != null; timer = next) {
+            next = timer.next;
+            timer.next = null;
+            if (timer.cancelled) continue;
+
+            //the other due frames were already taken out of the wheel, so one broken animation must not stop them.
+            //like a task of its own, a frame that throws is still scheduled again.
+            try {
+                timer.frame.run();
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.SEVERE, "Animation frame threw an exception", e);
+            }
+            frames += 1;
+
+            if (timer.period > 0L && !timer.cancelled && !timer.linked) {
+                insert(timer, currentTick + timer.period);
+            }
+        }
+
+        framesLastTick = frames;
+        framesApplied += frames;
+        if (frames > maxFramesPerTick) maxFramesPerTick = frames;
+
+        if (scheduledCount == 0 && task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Get the number of frames that are scheduled on this clock.
+     * @return the number of scheduled frames
+     */
+    public int getScheduledCount() {
+        return scheduledCount;
+    }
+
+    /**
+     * Get the number of ticks this clock has run.
+     * @return the number of ticks
+     */
+    public long getTicksRun() {
+        return ticksRun;
+    }
+
+    /**
+     * Get the total number of frames that this clock has applied.
+     * @return the number of frames
+     */
+    public long getFramesApplied() {
+        return framesApplied;
+    }
+
+    /**
+     * Get the number of frames that were applied in the most recent tick.
+     * @return the number of frames in the last tick
+     */
+    public int getFramesLastTick() {
+        return framesLastTick;
+    }
+
+    /**
+     * Get the largest number of frames that were applied in a single tick.
+     * @return the maximum number of frames per tick
+     */
+    public int getMaxFramesPerTick() {
+        return maxFramesPerTick;
+    }
+
+    /**
+     * Get the average number of frames that were applied per tick that this clock has run.
+     * @return the average number of frames per tick
+     */
+    public double getAverageFramesPerTick() {
+        return ticksRun == 0L ? 0D : (double) framesApplied / ticksRun;
+    }
+
+    private final class Timer implements GuiTask {
+        private final Runnable frame;
+        private final long period;
+        private long deadline;
+        private int bucket;
+        private Timer previous, next;
+        private boolean linked, cancelled;
+
+        private Timer(Runnable frame, long period) {
+            this.frame = frame;
+            this.period = period;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            if (linked) unlink(this);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+}
@@ -1,36 +1,68 @@
 package xyz.janboerman.guilib.api.animate;
 
+import org.bukkit.entity.Entity;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
-import org.bukkit.scheduler.BukkitScheduler;
-import org.bukkit.scheduler.BukkitTask;
 import xyz.janboerman.guilib.api.menu.MenuButton;
+import xyz.janboerman.guilib.api.schedule.GuiTask;
 import xyz.janboerman.guilib.api.util.IntBiConsumer;
 
+import java.util.Arrays;
 import java.util.Objects;
-import java.util.OptionalLong;
 
 /**
- * A player for {@link Animation}s.
+ * A player for {@link Animation}s. The frames of all runners of a plugin are shown by the plugin's {@link AnimationClock}.
  * @param <Item> the type of item in the container this animation player is used on
  */
 public final class AnimationRunner<Item> {
 
+    /** The maximum number of frames shown in a single tick, frames beyond this number are shown in the next tick. */
+    private static final int MAX_FRAMES_PER_TICK = 64;
+
     private final Plugin plugin;
+    private final Entity viewer;
     private final Animation animation;
     private final IntBiConsumer<Item> container;
 
     private AnimationState status = AnimationState.NOT_STARTED;
-    private BukkitTask task = null;
+    private GuiTask task = null;
+    private Schedule schedule = null;
+
+    //the batch of writes of frames that are shown in the same tick: the items indexed by slot, and the slots in the order in which they were first written.
+    //reused for every batch, and only allocated once a tick shows more than one frame.
+    private Object[] batchItems;
+    private boolean[] batched;
+    private int[] batchSlots;
+    private int batchSize;
+    private final IntBiConsumer<Item> batch = this::addToBatch;
 
     /**
      * Creates the AnimationRunner.
      * @param plugin the plugin used to run the animation task
      * @param animation the animation
-     * @param container the container. This is usually {@link org.bukkit.inventory.Inventory#setItem(int, ItemStack)} or {@link xyz.janboerman.guilib.api.menu.MenuHolder#setButton(int, MenuButton)}.
+     * @param container the container. This is usually {@link org.bukkit.inventory.Inventory#setItem(int, ItemStack)}, {@link xyz.janboerman.guilib.api.menu.MenuHolder#setIcon(int, ItemStack)}
+     *                  or {@link xyz.janboerman.guilib.api.menu.MenuHolder#setButton(int, MenuButton)}.
+     *                  The MenuHolder methods don't render frames while nobody is viewing the menu, they only render the latest frame once the menu is opened.
      */
     public AnimationRunner(Plugin plugin, Animation animation, IntBiConsumer<Item> container) {
         this.plugin = Objects.requireNonNull(plugin, "plugin cannot be null");
+        this.viewer = null;
+        this.animation = Objects.requireNonNull(animation, "animation cannot be null");
+        this.container = Objects.requireNonNull(container, "container cannot be null");
+    }
+
+    /**
+     * Creates the AnimationRunner for a container that is viewed by a single player.
+     * The frames are shown on the player's thread, which matters on region-threaded servers. The animation stops when the player logs out.
+     * @param plugin the plugin used to run the animation task
+     * @param viewer the player that views the container
+     * @param animation the animation
+     * @param container the container
+     * @see #AnimationRunner(Plugin, Animation, IntBiConsumer)
+     */
+    public AnimationRunner(Plugin plugin, Entity viewer, Animation animation, IntBiConsumer<Item> container) {
+        this.plugin = Objects.requireNonNull(plugin, "plugin cannot be null");
+        this.viewer = Objects.requireNonNull(viewer, "viewer cannot be null");
         this.animation = Objects.requireNonNull(animation, "animation cannot be null");
         this.container = Objects.requireNonNull(container, "container cannot be null");
     }
@@ -55,6 +87,9 @@ public final class AnimationRunner<Item> {
 
     /**
      * Play the animation frames according to a schedule.
+     * Frames that are due in the same tick are shown together, at most 64 per tick.
+     * Fixed-rate schedules, also when their time or number of steps is limited, show their first frame in the next tick,
+     * and the frames after it one period apart.
      * @param schedule the schedule
      * @return true if the animation started successfully, otherwise false
      * @throws IllegalStateException if the animation is already running.
@@ -92,111 +127,117 @@ public final class AnimationRunner<Item> {
     }
 
     private boolean runSchedule(Schedule schedule) {
-        //try to short-circuit a few common schedule structures
-        CommonRunnable sr = tryComputeCommonRunnable(schedule);
-        boolean specialCased = false;
-        if (sr != null) {
-            //at least we got a ScheduleRunnable successfully
-            //now let's try to run it (this might fail)
-            specialCased = trySpecialCaseRun(sr, schedule);
-        }
-
-        if (!specialCased) {
-            //fallback, we couldn't special-case a working CommonRunnable for the schedule.
-            tryFallbackRun(schedule);
+        //the compiled schedule is consumed step by step, the schedule that was passed in keeps its state.
+        this.schedule = schedule.compile();
+        task = null;
+
+        if (startsInNextTick(schedule)) {
+            //the first period is skipped: the first frame shows in the next tick, the frames after it one period apart.
+            long delay = this.schedule.nextDelay();
+            if (delay >= 0L) {
+                task = getClock().schedule(() -> advance(1), 1L, 0L);
+            } else {
+                this.status = AnimationState.FINISHED;
+                stop();
+            }
+        } else {
+            advance(0);
         }
 
         return getStatus() == AnimationState.RUNNING;
     }
 
-    private boolean trySpecialCaseRun(CommonRunnable sr, Schedule schedule) {
-        if (schedule instanceof OneTimeSchedule) {
-            OneTimeSchedule s = (OneTimeSchedule) schedule;
-            if (s.when == 0L) {
-                sr.run();
-                task = null;
-            } else if (s.when == 1L) {
-                task = sr.runTask(plugin);
-            } else {
-                task = sr.runTaskLater(plugin, ((OneTimeSchedule) schedule).when);
-            }
-            return true;
-        } else if (schedule instanceof FixedRateSchedule) {
-            task = sr.runTaskTimer(plugin, 0L, ((FixedRateSchedule) schedule).period);
-            return true;
-        } else if (schedule instanceof StepLimitedSchedule) {
-            return trySpecialCaseRun(sr, ((StepLimitedSchedule) schedule).source);
-        } else if (schedule instanceof TimeLimitedSchedule) {
-            return trySpecialCaseRun(sr, ((TimeLimitedSchedule) schedule).source);
-        } else if (schedule instanceof ConcatSchedule) {
-            ConcatSchedule concatSchedule = (ConcatSchedule) schedule;
-            if (concatSchedule.one instanceof OneTimeSchedule && concatSchedule.two instanceof RunFixedRate) {
-                task = sr.runTaskTimer(plugin, ((OneTimeSchedule) concatSchedule.one).when, ((RunFixedRate) concatSchedule.two).period);
-                return true;
-            }
+    //fixed-rate schedules, also when they are limited, show their first frame in the next tick instead of one period later.
+    //this is how they always ran, back when they ran on a bukkit timer without an initial delay.
+    private static boolean startsInNextTick(Schedule schedule) {
+        while (schedule instanceof StepLimitedSchedule || schedule instanceof TimeLimitedSchedule) {
+            schedule = schedule instanceof StepLimitedSchedule
+                    ? ((StepLimitedSchedule) schedule).source
+                    : ((TimeLimitedSchedule) schedule).source;
         }
-
-        return false;
+        return schedule instanceof FixedRateSchedule;
     }
 
-    private CommonRunnable tryComputeCommonRunnable(Schedule schedule) {
-        if (schedule instanceof OneTimeSchedule) {
-            OneTimeSchedule s = (OneTimeSchedule) schedule;
-            return new RunOnce(s.when, () -> { this.showFrame(); task = null; } );
-        } else if (schedule instanceof FixedRateSchedule) {
-            FixedRateSchedule s = (FixedRateSchedule) schedule;
-            return new RunFixedRate(s.period, this::showFrame);
-        } else if (schedule instanceof ConcatSchedule) {
-            ConcatSchedule s = (ConcatSchedule) schedule;
-            CommonRunnable one = tryComputeCommonRunnable(s.one);
-            CommonRunnable two = tryComputeCommonRunnable(s.two);
-            if (one != null && two != null) {
-                return new RunConcat(one, two);
-            }
-        } else if (schedule instanceof StepLimitedSchedule) {
-            StepLimitedSchedule s = (StepLimitedSchedule) schedule;
-            CommonRunnable sr = tryComputeCommonRunnable(s.source);
-            if (sr != null) {
-                return new RunStepLimited(sr, s.stepLimit, s.stepsPassed);
-            }
-        } else if (schedule instanceof TimeLimitedSchedule) {
-            TimeLimitedSchedule s = (TimeLimitedSchedule) schedule;
-            CommonRunnable sr = tryComputeCommonRunnable(s.source);
-            if (sr != null) {
-                return new RunTimeLimited(sr, s.timeLimit, s.timePassed);
-            }
-        }
+    //shows the frames that are due in the current tick and schedules the next frame.
+    //frames without a delay are gathered in a loop instead of a recursive call, so long runs of them can't overflow the stack.
+    private void advance(int framesDue) {
+        task = null;
 
-        return null;
-    }
+        int frames = framesDue;
+        long delay = schedule.nextDelay();
+        while (delay == 0L && frames < MAX_FRAMES_PER_TICK) {
+            frames += 1;
+            delay = schedule.nextDelay();
+        }
 
-    private void tryFallbackRun(Schedule schedule) {
-        OptionalLong nextTick = schedule.next();
+        if (frames > 0) {
+            showFrames(frames);
+            if (status == AnimationState.FINISHED) return;
+        }
 
-        if (nextTick.isEmpty()) {
+        if (delay < 0L) {
             this.status = AnimationState.FINISHED;
             stop();
+        } else if (delay == 0L) {
+            //the schedule serves too many frames in the same tick, the frame that is due now is shown in the next tick.
+            task = getClock().schedule(() -> advance(1), 1L, 0L);
         } else {
-            long delay = nextTick.getAsLong();
-            if (delay == 0) {
-                showFrame();
-                tryFallbackRun(schedule);
-            } else {
-                task = getScheduler().runTaskLater(plugin, () -> {
-                    showFrame();
-                    tryFallbackRun(schedule);
-                }, delay);
+            task = getClock().schedule(() -> advance(1), delay, 0L);
+        }
+    }
+
+    private void showFrames(int count) {
+        if (count == 1) {
+            showFrame(container);
+        } else {
+            //only the last item put in each slot during a tick is ever seen, so the frames are collapsed into one batch.
+            if (batchItems == null) {
+                batchItems = new Object[54];
+                batched = new boolean[54];
+                batchSlots = new int[54];
+            }
+            for (int i = 0; i < count && status != AnimationState.FINISHED; i++) {
+                showFrame(batch);
             }
+            flushBatch();
+        }
+    }
+
+    private void addToBatch(int slot, Item item) {
+        if (slot < 0) throw new IndexOutOfBoundsException("Negative slot: " + slot);
+        if (slot >= batchItems.length) {
+            int length = Math.max(slot + 1, batchItems.length * 2);
+            batchItems = Arrays.copyOf(batchItems, length);
+            batched = Arrays.copyOf(batched, length);
+            batchSlots = Arrays.copyOf(batchSlots, length);
+        }
+
+        batchItems[slot] = item;
+        if (!batched[slot]) {
+            batched[slot] = true;
+            batchSlots[batchSize++] = slot;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void flushBatch() {
+        for (int i = 0; i < batchSize; i++) {
+            int slot = batchSlots[i];
+            Item item = (Item) batchItems[slot];
+            batchItems[slot] = null;
+            batched[slot] = false;
+            container.accept(slot, item);
         }
+        batchSize = 0;
     }
 
-    private void showFrame() {
+    private void showFrame(IntBiConsumer<Item> target) {
         if (!animation.hasNextFrame()) {
             status = AnimationState.FINISHED;
             cancelTask();
         } else {
             Frame frame = animation.nextFrame();
-            frame.apply(container);
+            frame.apply(target);
         }
     }
 
@@ -207,8 +248,8 @@ public final class AnimationRunner<Item> {
         }
     }
 
-    private BukkitScheduler getScheduler() {
-        return plugin.getServer().getScheduler();
+    private AnimationClock getClock() {
+        return viewer == null ? AnimationClock.of(plugin) : AnimationClock.of(plugin, viewer);
     }
 
 }
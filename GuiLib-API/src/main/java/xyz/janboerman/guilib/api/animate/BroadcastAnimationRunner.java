@@ -0,0 +1,201 @@
+package xyz.janboerman.guilib.api.animate;
+
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
+import xyz.janboerman.guilib.api.GuiInventoryHolder;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * A player for an {@link Animation} that is shown in many containers at once, for example a lobby animation that is shown in the menus of all players.
+ * Every frame is evaluated once, and the items of the frame are passed to all subscribed containers.
+ * <p>
+ * Subscribers are held weakly by their owner, so they are dropped when their owner is garbage collected.
+ * Owners that are {@link GuiInventoryHolder}s are dropped as soon as nobody views them anymore after they were viewed.
+ * Containers that subscribe while the animation is playing receive the items that were shown so far right away.
+ * <p>
+ * Menus can subscribe as follows:
+ * <pre><code>
+ * BroadcastAnimationRunner&lt;ItemStack&gt; runner = new BroadcastAnimationRunner&lt;&gt;(plugin, animation);
+ * runner.subscribe(menu, MenuHolder::setIcon);
+ * </code></pre>
+ * A BroadcastAnimationRunner must only be used on the thread that runs its animation.
+ *
+ * @param <Item> the type of item in the containers
+ */
+public final class BroadcastAnimationRunner<Item> {
+
+    private final AnimationRunner<Item> runner;
+    @SuppressWarnings("unchecked")
+    private Subscription<?, Item>[] subscriptions = new Subscription[0];
+    /** The items that were shown so far, replayed to new subscribers */
+    private final Map<Integer, Item> shown = new HashMap<>();
+
+    /**
+     * Creates the BroadcastAnimationRunner.
+     * @param plugin the plugin used to run the animation task
+     * @param animation the animation
+     */
+    public BroadcastAnimationRunner(Plugin plugin, Animation animation) {
+        this.runner = new AnimationRunner<>(plugin, animation, this::broadcast);
+    }
+
+    /**
+     * Subscribe a container to this runner. The container receives the items of all frames that are shown from now on.
+     * <p>
+     * The subscriber must not hold a strong reference to its owner, otherwise the owner is never garbage collected.
+     * Use the owner that is passed to the subscriber instead.
+     * @param owner the owner of the container, for example a {@link xyz.janboerman.guilib.api.menu.MenuHolder}
+     * @param subscriber the container, for example {@link xyz.janboerman.guilib.api.menu.MenuHolder#setIcon(int, ItemStack)}
+     * @param <O> the owner type
+     */
+    public <O> void subscribe(O owner, Subscriber<? super O, ? super Item> subscriber) {
+        Objects.requireNonNull(owner, "owner cannot be null");
+        Objects.requireNonNull(subscriber, "subscriber cannot be null");
+
+        Subscription<O, Item> subscription = new Subscription<>(owner, subscriber);
+        Subscription<?, Item>[] subscriptions = Arrays.copyOf(this.subscriptions, this.subscriptions.length + 1);
+        subscriptions[subscriptions.length - 1] = subscription;
+        this.subscriptions = subscriptions;
+
+        for (Map.Entry<Integer, Item> entry : shown.entrySet()) {
+            subscriber.accept(owner, entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Unsubscribe all containers of an owner.
+     * @param owner the owner
+     * @return true if a container was subscribed for the owner, otherwise false
+     */
+    public boolean unsubscribe(Object owner) {
+        int removed = removeIf(subscription -> subscription.owner.get() == owner);
+        return removed > 0;
+    }
+
+    /**
+     * Get the number of subscribed containers. Containers whose owners were dropped recently may still be counted.
+     * @return the number of subscribers
+     */
+    public int getSubscriberCount() {
+        return subscriptions.length;
+    }
+
+    /**
+     * Get the status of this runner.
+     * @return the status
+     * @see AnimationRunner#getStatus()
+     */
+    public AnimationState getStatus() {
+        return runner.getStatus();
+    }
+
+    /**
+     * Play the animation frames according to a schedule.
+     * @param schedule the schedule
+     * @return true if the animation started successfully, otherwise false
+     * @throws IllegalStateException if the animation is already running.
+     * @see AnimationRunner#play(Schedule)
+     */
+    public boolean play(Schedule schedule) {
+        return runner.play(schedule);
+    }
+
+    /**
+     * Makes the animation stop playing.
+     * @see AnimationRunner#stop()
+     */
+    public void stop() {
+        runner.stop();
+    }
+
+    /**
+     * Resets the animation, making the runner ready again to start over from the beginning.
+     * The items that were shown so far are no longer replayed to new subscribers.
+     * @see AnimationRunner#reset()
+     */
+    public void reset() {
+        runner.reset();
+        shown.clear();
+    }
+
+    private void broadcast(int slot, Item item) {
+        shown.put(slot, item);
+
+        boolean dropped = false;
+        for (Subscription<?, Item> subscription : subscriptions) {
+            dropped |= !subscription.accept(slot, item);
+        }
+        if (dropped) removeIf(Subscription::isDropped);
+    }
+
+    private int removeIf(Predicate<Subscription<?, Item>> predicate) {
+        Subscription<?, Item>[] subscriptions = this.subscriptions;
+        Subscription<?, Item>[] remaining = Arrays.copyOf(subscriptions, subscriptions.length);
+        int size = 0;
+        for (Subscription<?, Item> subscription : subscriptions) {
+            if (!predicate.test(subscription)) remaining[size++] = subscription;
+        }
+        this.subscriptions = Arrays.copyOf(remaining, size);
+        return subscriptions.length - size;
+    }
+
+    /**
+     * A container that receives the items of the frames of a {@link BroadcastAnimationRunner}.
+     * @param <O> the owner type
+     * @param <Item> the type of item in the container
+     */
+    @FunctionalInterface
+    public static interface Subscriber<O, Item> {
+        /**
+         * Put an item in the container of the owner.
+         * @param owner the owner
+         * @param slot the slot
+         * @param item the item
+         */
+        public void accept(O owner, int slot, Item item);
+    }
+
+    private static final class Subscription<O, Item> {
+        private final WeakReference<O> owner;
+        private final Subscriber<? super O, ? super Item> subscriber;
+        private boolean dropped;
+
+        private Subscription(O owner, Subscriber<? super O, ? super Item> subscriber) {
+            this.owner = new WeakReference<>(owner);
+            this.subscriber = subscriber;
+        }
+
+        //returns false if the subscription was dropped.
+        private boolean accept(int slot, Item item) {
+            if (dropped) return false;
+
+            O owner = this.owner.get();
+            if (owner == null) {
+                dropped = true;
+                return false;
+            }
+            if (owner instanceof GuiInventoryHolder) {
+                //drop menus that were closed, also when they were closed between two frames, but not menus that were not opened yet.
+                GuiInventoryHolder<?> holder = (GuiInventoryHolder<?>) owner;
+                if (holder.wasViewed() && holder.getViewerCount() == 0) {
+                    dropped = true;
+                    return false;
+                }
+            }
+
+            subscriber.accept(owner, slot, item);
+            return true;
+        }
+
+        private boolean isDropped() {
+            return dropped;
+        }
+    }
+
+}
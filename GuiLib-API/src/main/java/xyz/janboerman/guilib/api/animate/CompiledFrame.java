@@ -0,0 +1,107 @@
+package xyz.janboerman.guilib.api.animate;
+
+import xyz.janboerman.guilib.api.mask.Mask;
+import xyz.janboerman.guilib.api.mask.Pattern;
+import xyz.janboerman.guilib.api.util.IntBiConsumer;
+import xyz.janboerman.guilib.api.util.IntGenerator;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A {@link Frame} whose pattern, mask and active slots were resolved ahead of time into a flat list of slots and items.
+ * Applying a compiled frame does not look up any symbols or items, it just puts the items into the container.
+ * <p>
+ * Compiled frames are created using {@link Frame#compile()}.
+ *
+ * @param <Symbol> the symbol type of the frame it was compiled from
+ * @param <Item> the container element type
+ */
+public final class CompiledFrame<Symbol, Item> extends Frame<Symbol, Item> {
+
+    private final Frame<Symbol, Item> source;
+    final int[] slots;
+    final Object[] items;
+
+    CompiledFrame(Frame<Symbol, Item> source, int[] slots, Object[] items) {
+        this.source = source;
+        this.slots = slots;
+        this.items = items;
+    }
+
+    /**
+     * Get the frame this frame was compiled from.
+     * @return the source frame
+     */
+    public Frame<Symbol, Item> getSource() {
+        return source;
+    }
+
+    /**
+     * Get the number of slots this frame puts an item in.
+     * @return the number of slots
+     */
+    public int size() {
+        return slots.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void apply(IntBiConsumer<? super Item> container) {
+        int[] slots = this.slots;
+        Object[] items = this.items;
+        for (int i = 0; i < slots.length; i++) {
+            container.accept(slots[i], (Item) items[i]);
+        }
+    }
+
+    /**
+     * Returns this frame, it is already compiled.
+     * @return this frame
+     */
+    @Override
+    public CompiledFrame<Symbol, Item> compile() {
+        return this;
+    }
+
+    @Override
+    public boolean isCompilable() {
+        return true;
+    }
+
+    @Override
+    public Frame withNewPattern(Pattern<Symbol> pattern) {
+        return source.withNewPattern(pattern);
+    }
+
+    @Override
+    public Frame withNewMask(Mask<Symbol, Item> mask) {
+        return source.withNewMask(mask);
+    }
+
+    @Override
+    public Frame withNewActiveSlots(IntGenerator activeSlots) {
+        return source.withNewActiveSlots(activeSlots);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof CompiledFrame)) return false;
+
+        CompiledFrame that = (CompiledFrame) o;
+        return Arrays.equals(this.slots, that.slots)
+                && Arrays.equals(this.items, that.items);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(Arrays.hashCode(slots), Arrays.hashCode(items));
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledFrame(source=" + source + ",slots=" + Arrays.toString(slots) + ",items=" + Arrays.toString(items) + ")";
+    }
+
+}
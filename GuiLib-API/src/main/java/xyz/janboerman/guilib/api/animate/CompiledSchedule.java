@@ -0,0 +1,217 @@
+package xyz.janboerman.guilib.api.animate;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.OptionalLong;
+
+/**
+ * A {@link Schedule} that was flattened into a timeline of the ticks at which its frames are due, counted from the start of the schedule.
+ * The steps from {@link #loopStart} onwards repeat forever, each repetition is {@link #loopPeriod} ticks later than the previous one.
+ * <p>
+ * Compiled schedules are created using {@link Schedule#compile()}.
+ */
+final class CompiledSchedule implements Schedule {
+
+    /** Schedules with more steps than this (not counting repetitions) are not compiled. */
+    static final int MAX_STEPS = 1 << 16;
+
+    private static final long[] NO_DELAYS = new long[0];
+
+    private final long[] ticks;
+    private final int loopStart;
+    private final long loopPeriod;
+
+    private int index;
+    private long base;
+    private long previousTick;
+
+    private CompiledSchedule(long[] ticks, int loopStart, long loopPeriod, int index, long base, long previousTick) {
+        this.ticks = ticks;
+        this.loopStart = loopStart;
+        this.loopPeriod = loopPeriod;
+        this.index = index;
+        this.base = base;
+        this.previousTick = previousTick;
+    }
+
+    private CompiledSchedule(long[] delays, long[] loop) {
+        this.ticks = new long[delays.length + loop.length];
+        long tick = 0L;
+        for (int i = 0; i < delays.length; i++) {
+            ticks[i] = tick += delays[i];
+        }
+        long period = 0L;
+        for (int i = 0; i < loop.length; i++) {
+            period += loop[i];
+            ticks[delays.length + i] = tick += loop[i];
+        }
+        this.loopStart = loop.length == 0 ? ticks.length : delays.length;
+        this.loopPeriod = period;
+    }
+
+    static Schedule compile(Schedule schedule) {
+        Objects.requireNonNull(schedule, "schedule cannot be null");
+
+        CompiledSchedule compiled = timeline(schedule);
+        return compiled == null ? schedule : compiled;
+    }
+
+    //computes the remaining steps of the schedule without changing its state. returns null if the schedule can't be compiled.
+    private static CompiledSchedule timeline(Schedule schedule) {
+        if (schedule instanceof CompiledSchedule) {
+            return (CompiledSchedule) schedule.clone();
+        } else if (schedule instanceof FixedRateSchedule) {
+            return new CompiledSchedule(NO_DELAYS, new long[] {((FixedRateSchedule) schedule).period});
+        } else if (schedule instanceof OneTimeSchedule) {
+            OneTimeSchedule s = (OneTimeSchedule) schedule;
+            return new CompiledSchedule(s.done ? NO_DELAYS : new long[] {s.when}, NO_DELAYS);
+        } else if (schedule instanceof ArraySchedule) {
+            ArraySchedule s = (ArraySchedule) schedule;
+            return new CompiledSchedule(Arrays.copyOfRange(s.delays, Math.min(s.currentIndex, s.delays.length), s.delays.length), NO_DELAYS);
+        } else if (schedule instanceof ConcatSchedule) {
+            ConcatSchedule s = (ConcatSchedule) schedule;
+            CompiledSchedule one = timeline(s.one);
+            if (one == null || one.repeats()) return one;
+            CompiledSchedule two = timeline(s.two);
+            if (two == null) return null;
+            return concat(one, two);
+        } else if (schedule instanceof RepeatingSchedule) {
+            RepeatingSchedule s = (RepeatingSchedule) schedule;
+            CompiledSchedule current = timeline(s.source);
+            if (current == null || current.repeats()) return current;
+            Schedule fresh = s.source.clone();
+            fresh.reset();
+            CompiledSchedule whole = timeline(fresh);
+            if (whole == null) return null;
+            if (whole.repeats() || whole.ticks.length == 0) return concat(current, whole);
+            return new CompiledSchedule(current.delays(current.index), whole.delays(whole.index));
+        } else if (schedule instanceof StepLimitedSchedule) {
+            StepLimitedSchedule s = (StepLimitedSchedule) schedule;
+            CompiledSchedule source = timeline(s.source);
+            if (source == null) return null;
+            long remaining = Math.max(0L, s.stepLimit - s.stepsPassed);
+            if (!source.repeats() && remaining >= source.ticks.length - source.index) return source;
+            if (remaining > MAX_STEPS) return null;
+            long[] delays = new long[(int) remaining];
+            int steps = 0;
+            long delay;
+            while (steps < delays.length && (delay = source.nextDelay()) >= 0L) {
+                delays[steps++] = delay;
+            }
+            return new CompiledSchedule(Arrays.copyOf(delays, steps), NO_DELAYS);
+        } else if (schedule instanceof TimeLimitedSchedule) {
+            TimeLimitedSchedule s = (TimeLimitedSchedule) schedule;
+            CompiledSchedule source = timeline(s.source);
+            if (source == null) return null;
+            long[] delays = new long[Math.min(source.ticks.length, 16)];
+            int steps = 0;
+            long timePassed = s.timePassed;
+            while (steps < MAX_STEPS) {
+                //once only the repeating part is left and it takes no time, the time limit can never be exceeded.
+                if (source.index == source.ticks.length && source.repeats() && source.loopPeriod == 0L) {
+                    return new CompiledSchedule(Arrays.copyOf(delays, steps), source.delays(source.loopStart));
+                }
+                long delay = source.nextDelay();
+                if (delay < 0L) break;
+                timePassed += delay;
+                if (timePassed > s.timeLimit) break;
+                if (steps == delays.length) delays = Arrays.copyOf(delays, Math.max(16, steps * 2));
+                delays[steps++] = delay;
+            }
+            return steps == MAX_STEPS ? null : new CompiledSchedule(Arrays.copyOf(delays, steps), NO_DELAYS);
+        } else {
+            //an unknown schedule, it can only be compiled if it ends within a bounded number of steps.
+            Schedule copy = schedule.clone();
+            long[] delays = new long[16];
+            int steps = 0;
+            long delay;
+            while ((delay = copy.nextDelay()) >= 0L) {
+                if (steps == MAX_STEPS) return null;
+                if (steps == delays.length) delays = Arrays.copyOf(delays, steps * 2);
+                delays[steps++] = delay;
+            }
+            return new CompiledSchedule(Arrays.copyOf(delays, steps), NO_DELAYS);
+        }
+    }
+
+    private static CompiledSchedule concat(CompiledSchedule one, CompiledSchedule two) {
+        long[] first = one.delays(one.index);
+        long[] second = two.delays(two.index);
+        long[] delays = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, delays, first.length, second.length);
+        return new CompiledSchedule(delays, two.repeats() ? two.delays(two.loopStart) : NO_DELAYS);
+    }
+
+    private boolean repeats() {
+        return loopStart < ticks.length;
+    }
+
+    //the delays of the steps from the given index up to the end of the timeline (not including repetitions).
+    private long[] delays(int from) {
+        long[] delays = new long[ticks.length - from];
+        for (int i = from; i < ticks.length; i++) {
+            delays[i - from] = ticks[i] - (i == 0 ? 0L : ticks[i - 1]);
+        }
+        return delays;
+    }
+
+    @Override
+    public void reset() {
+        index = 0;
+        base = 0L;
+        previousTick = 0L;
+    }
+
+    @Override
+    public OptionalLong next() {
+        long delay = nextDelay();
+        return delay < 0L ? OptionalLong.empty() : OptionalLong.of(delay);
+    }
+
+    @Override
+    public long nextDelay() {
+        if (index == ticks.length) {
+            if (!repeats()) return END;
+            index = loopStart;
+            base += loopPeriod;
+        }
+
+        long tick = base + ticks[index++];
+        long delay = tick - previousTick;
+        previousTick = tick;
+        return delay;
+    }
+
+    @Override
+    public Schedule compile() {
+        return clone();
+    }
+
+    @Override
+    public Schedule clone() {
+        return new CompiledSchedule(ticks, loopStart, loopPeriod, index, base, previousTick);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(Arrays.hashCode(ticks), loopStart, index, base);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) return true;
+        if (!(obj instanceof CompiledSchedule)) return false;
+
+        CompiledSchedule that = (CompiledSchedule) obj;
+        return this.loopStart == that.loopStart
+                && this.index == that.index
+                && this.base == that.base
+                && this.previousTick == that.previousTick
+                && Arrays.equals(this.ticks, that.ticks);
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledSchedule(ticks=" + Arrays.toString(ticks) + ",loopStart=" + loopStart + ",index=" + index + ",base=" + base + ")";
+    }
+}
@@ -8,6 +8,7 @@ import xyz.janboerman.guilib.api.util.IntBiConsumer;
 import xyz.janboerman.guilib.api.util.IntGenerator;
 import xyz.janboerman.guilib.api.util.Option;
 
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -17,6 +18,18 @@ import java.util.Objects;
  */
 public class Frame<Symbol, Item> {
 
+    //frames whose class does not override apply can be compiled.
+    private static final ClassValue<Boolean> COMPILABLE = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("apply", IntBiConsumer.class).getDeclaringClass() == Frame.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
     private final Pattern<Symbol> pattern;
     private final Mask<Symbol, Item> mask;
     private final IntGenerator activeSlots;
@@ -33,6 +46,13 @@ public class Frame<Symbol, Item> {
         this.activeSlots = Objects.requireNonNull(activeSlots, "activeSlots cannot be null");
     }
 
+    //used by CompiledFrame, which does not need a pattern, mask or active slots.
+    Frame() {
+        this.pattern = null;
+        this.mask = null;
+        this.activeSlots = null;
+    }
+
     /**
      * Applies the frame to a container.
      * @param container the container. Typically this is {@link xyz.janboerman.guilib.api.menu.MenuHolder#setButton(int, MenuButton)} or {@link org.bukkit.inventory.Inventory#setItem(int, ItemStack)};
@@ -46,6 +66,48 @@ public class Frame<Symbol, Item> {
         activeSlots.reset();
     }
 
+    /**
+     * Resolves the pattern, the mask and the active slots of this frame into a {@link CompiledFrame}.
+     * The compiled frame puts the same items in the same slots as this frame, as long as the pattern and mask always return the same values.
+     * Frames whose pattern or mask change over time should not be compiled.
+     * @return the compiled frame
+     * @throws UnsupportedOperationException if the subclass overrides {@link #apply(IntBiConsumer)}
+     */
+    public CompiledFrame<Symbol, Item> compile() throws UnsupportedOperationException {
+        if (!isCompilable()) throw new UnsupportedOperationException(getClass().getName() + " overrides apply");
+
+        int[] slots = new int[16];
+        Object[] items = new Object[16];
+        int size = 0;
+        try {
+            while (activeSlots.hasNext()) {
+                int slot = activeSlots.nextInt();
+                Option<Item> item = mask.getItem(pattern.getSymbol(slot));
+                if (item.isPresent()) {
+                    if (size == slots.length) {
+                        slots = Arrays.copyOf(slots, size << 1);
+                        items = Arrays.copyOf(items, size << 1);
+                    }
+                    slots[size] = slot;
+                    items[size] = item.get();
+                    size += 1;
+                }
+            }
+        } finally {
+            activeSlots.reset();
+        }
+
+        return new CompiledFrame<>(this, Arrays.copyOf(slots, size), Arrays.copyOf(items, size));
+    }
+
+    /**
+     * Tests whether this frame can be compiled. Frames can be compiled unless their class overrides {@link #apply(IntBiConsumer)}.
+     * @return true if {@link #compile()} is supported, otherwise false
+     */
+    public boolean isCompilable() {
+        return COMPILABLE.get(getClass());
+    }
+
     /**
      * Copy the frame, but use a new pattern.
      * @param pattern the new pattern
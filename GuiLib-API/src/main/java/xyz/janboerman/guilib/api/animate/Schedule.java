@@ -9,6 +9,11 @@ import java.util.OptionalLong;
  */
 public interface Schedule {
 
+    /**
+     * The value returned by {@link #nextDelay()} when a schedule is finished.
+     */
+    public static final long END = -1L;
+
     /**
      * Resets the schedule to its initial state.
      */
@@ -20,6 +25,26 @@ public interface Schedule {
      */
     public OptionalLong next();
 
+    /**
+     * Get number of ticks until the next frame is up for display, without wrapping it in an {@link OptionalLong}.
+     * The built-in schedules implement this method directly, custom schedules can override it to avoid the allocation.
+     * @return {@link #END} if this schedule is finished, otherwise the number of ticks until the next frame
+     */
+    public default long nextDelay() {
+        OptionalLong next = next();
+        return next.isPresent() ? next.getAsLong() : END;
+    }
+
+    /**
+     * Compiles this schedule into a timeline of the ticks at which its frames are due, starting from the current state of this schedule.
+     * Repeating parts of the schedule are stored once, so schedules that repeat forever can be compiled too.
+     * The compiled schedule serves the same delays as this schedule, but does not change the state of this schedule.
+     * @return the compiled schedule, or this schedule if it cannot be compiled
+     */
+    public default Schedule compile() {
+        return CompiledSchedule.compile(this);
+    }
+
     /**
      * Get a copy of this schedule.
      * @return a new Schedule
@@ -63,7 +88,8 @@ public interface Schedule {
     }
 
     /**
-     * A schedule that serves frames at a fixed rate
+     * A schedule that serves frames at a fixed rate.
+     * When an {@link AnimationRunner} plays this schedule, the first frame is shown in the next tick rather than after one period.
      * @param period the number of ticks between frames
      * @return a new schedule
      */
@@ -114,7 +140,7 @@ public interface Schedule {
 }
 
 class RepeatingSchedule implements Schedule {
-    private final Schedule source;
+    final Schedule source;
 
     RepeatingSchedule(Schedule source) {
         this.source = source;
@@ -127,10 +153,16 @@ class RepeatingSchedule implements Schedule {
 
     @Override
     public OptionalLong next() {
-        OptionalLong next = source.next();
-        if (next.isPresent()) return next;
+        long delay = nextDelay();
+        return delay < 0L ? OptionalLong.empty() : OptionalLong.of(delay);
+    }
+
+    @Override
+    public long nextDelay() {
+        long next = source.nextDelay();
+        if (next >= 0L) return next;
         source.reset();
-        return source.next();
+        return source.nextDelay();
     }
 
     @Override
@@ -170,8 +202,8 @@ class RepeatingSchedule implements Schedule {
 
 class ArraySchedule implements Schedule {
 
-    private int currentIndex;
-    private long[] delays;
+    int currentIndex;
+    long[] delays;
 
     private ArraySchedule(long[] delays, int currentIndex) {
         this.delays = delays;
@@ -189,9 +221,15 @@ class ArraySchedule implements Schedule {
 
     @Override
     public OptionalLong next() {
-        if (currentIndex >= delays.length) return OptionalLong.empty();
+        long delay = nextDelay();
+        return delay < 0L ? OptionalLong.empty() : OptionalLong.of(delay);
+    }
+
+    @Override
+    public long nextDelay() {
+        if (currentIndex >= delays.length) return END;
 
-        return OptionalLong.of(delays[currentIndex++]);
+        return delays[currentIndex++];
     }
 
     @Override
@@ -264,11 +302,16 @@ class ConcatSchedule implements Schedule {
 
     @Override
     public OptionalLong next() {
-        OptionalLong next = one.next();
-        if (next.isPresent()) return next;
+        long delay = nextDelay();
+        return delay < 0L ? OptionalLong.empty() : OptionalLong.of(delay);
+    }
 
-        next = two.next();
-        return next;
+    @Override
+    public long nextDelay() {
+        long next = one.nextDelay();
+        if (next >= 0L) return next;
+
+        return two.nextDelay();
     }
 
     @Override
@@ -298,7 +341,7 @@ class ConcatSchedule implements Schedule {
 }
 
 class OneTimeSchedule implements Schedule {
-    private boolean done = false;
+    boolean done = false;
     final long when;
 
     private OneTimeSchedule(boolean done, long when) {
@@ -317,11 +360,17 @@ class OneTimeSchedule implements Schedule {
 
     @Override
     public OptionalLong next() {
+        long delay = nextDelay();
+        return delay < 0L ? OptionalLong.empty() : OptionalLong.of(delay);
+    }
+
+    @Override
+    public long nextDelay() {
         if (done) {
-            return OptionalLong.empty();
+            return END;
         } else {
             done = true;
-            return OptionalLong.of(when);
+            return when;
         }
     }
 
@@ -381,9 +430,15 @@ class StepLimitedSchedule implements Schedule {
 
     @Override
     public OptionalLong next() {
-        if (stepsPassed >= stepLimit) return OptionalLong.empty();
+        long delay = nextDelay();
+        return delay < 0L ? OptionalLong.empty() : OptionalLong.of(delay);
+    }
+
+    @Override
+    public long nextDelay() {
+        if (stepsPassed >= stepLimit) return END;
         stepsPassed += 1L;
-        return source.next();
+        return source.nextDelay();
     }
 
     @Override
@@ -447,12 +502,17 @@ class TimeLimitedSchedule implements Schedule {
 
     @Override
     public OptionalLong next() {
-        OptionalLong next = source.next();
-        if (next.isEmpty()) return OptionalLong.empty();
+        long delay = nextDelay();
+        return delay < 0L ? OptionalLong.empty() : OptionalLong.of(delay);
+    }
+
+    @Override
+    public long nextDelay() {
+        long next = source.nextDelay();
+        if (next < 0L) return END;
 
-        long add = next.getAsLong();
-        timePassed += add;
-        if (timePassed > timeLimit) return OptionalLong.empty();
+        timePassed += next;
+        if (timePassed > timeLimit) return END;
 
         return next;
     }
@@ -510,6 +570,11 @@ class FixedRateSchedule implements Schedule {
         return OptionalLong.of(period);
     }
 
+    @Override
+    public long nextDelay() {
+        return period;
+    }
+
     @Override
     public Schedule limitSteps(long totalSteps) {
         if (totalSteps == 1) {
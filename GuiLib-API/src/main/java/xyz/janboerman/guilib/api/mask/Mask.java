@@ -5,6 +5,7 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
 import xyz.janboerman.guilib.api.menu.MenuButton;
 import xyz.janboerman.guilib.api.menu.MenuHolder;
+import xyz.janboerman.guilib.api.schedule.GuiWorkQueue;
 import xyz.janboerman.guilib.api.util.IntBiConsumer;
 import xyz.janboerman.guilib.api.util.Option;
 
@@ -75,6 +76,7 @@ public interface Mask<Symbol, Item> {
 
     /**
      * Apply a bulk update to a menu. All the menu slots that are supported by the pattern and mask will get an update.
+     * The buttons are set as a single unit, see {@link MenuHolder#edit(java.util.function.Consumer)}.
      * @param mask the mask
      * @param pattern the pattern
      * @param menu the inventory
@@ -83,11 +85,30 @@ public interface Mask<Symbol, Item> {
      * @param <MH> the MenuHolder type
      */
     public static <Symbol, P extends Plugin, MH extends MenuHolder<P>> void applyMenu(Mask<Symbol, ? extends MenuButton<MH>> mask, Pattern<Symbol> pattern, MH menu) {
-        for (int slot = 0; slot < menu.getInventory().getSize(); slot++) {
-            Symbol symbol = pattern.getSymbol(slot);
-            var button = mask.getItem(symbol);
-            if (button.isPresent()) menu.setButton(slot, button.get());
-        }
+        menu.edit(transaction -> {
+            for (int slot = 0; slot < menu.getInventorySize(); slot++) {
+                Symbol symbol = pattern.getSymbol(slot);
+                var button = mask.getItem(symbol);
+                if (button.isPresent()) transaction.setButton(slot, button.get());
+            }
+        });
+    }
+
+    /**
+     * Apply a bulk update to a menu through a work queue, so that the update runs within the queue's budget per tick.
+     * The update runs before other work once the menu is being viewed, see {@link GuiWorkQueue#submit(xyz.janboerman.guilib.api.GuiInventoryHolder, Runnable)}.
+     * @param mask the mask
+     * @param pattern the pattern
+     * @param menu the inventory
+     * @param workQueue the work queue, for example {@code GuiWorkQueue.of(plugin)}
+     * @param <Symbol> the symbol Type
+     * @param <P> the plugin type
+     * @param <MH> the MenuHolder type
+     * @see #applyMenu(Mask, Pattern, MenuHolder)
+     */
+    public static <Symbol, P extends Plugin, MH extends MenuHolder<P>> void applyMenu(Mask<Symbol, ? extends MenuButton<MH>> mask, Pattern<Symbol> pattern, MH menu, GuiWorkQueue workQueue) {
+        Objects.requireNonNull(workQueue, "workQueue cannot be null");
+        workQueue.submit(menu, () -> applyMenu(mask, pattern, menu));
     }
 
 }
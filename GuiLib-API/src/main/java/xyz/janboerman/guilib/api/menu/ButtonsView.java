@@ -0,0 +1,132 @@
+package xyz.janboerman.guilib.api.menu;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.function.BiConsumer;
+
+/**
+ * A read-only, live view of the buttons of a {@link MenuHolder}, sorted by slot.
+ * The view reads the menu's occupancy bitmask, so lookups and {@link #forEach(BiConsumer)} don't allocate,
+ * and slot keys are always cached Integer instances.
+ */
+final class ButtonsView extends AbstractMap<Integer, MenuButton<?>> implements SortedMap<Integer, MenuButton<?>> {
+
+    private final MenuHolder<?> menu;
+    private final int from, to; //from is inclusive, to is exclusive
+
+    ButtonsView(MenuHolder<?> menu, int from, int to) {
+        this.menu = menu;
+        this.from = from;
+        this.to = to;
+    }
+
+    private int nextSlot(int slot) {
+        return Math.min(menu.nextOccupiedSlot(slot), to);
+    }
+
+    private boolean inRange(Object key) {
+        if (!(key instanceof Integer)) return false;
+        int slot = (Integer) key;
+        return from <= slot && slot < to;
+    }
+
+    @Override
+    public int size() {
+        return menu.countOccupiedSlots(from, to);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return nextSlot(from) == to;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return inRange(key) && menu.getButton((Integer) key) != null;
+    }
+
+    @Override
+    public MenuButton<?> get(Object key) {
+        return inRange(key) ? menu.getButton((Integer) key) : null;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super Integer, ? super MenuButton<?>> action) {
+        Objects.requireNonNull(action, "Action cannot be null");
+        for (int slot = nextSlot(from); slot < to; slot = nextSlot(slot + 1)) {
+            action.accept(slot, menu.getButton(slot));
+        }
+    }
+
+    @Override
+    public Set<Entry<Integer, MenuButton<?>>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Integer, MenuButton<?>>> iterator() {
+                return new Iterator<>() {
+                    int slot = nextSlot(from);
+
+                    @Override
+                    public boolean hasNext() {
+                        return slot < to;
+                    }
+
+                    @Override
+                    public Entry<Integer, MenuButton<?>> next() {
+                        if (slot >= to) throw new NoSuchElementException();
+                        Entry<Integer, MenuButton<?>> entry = new SimpleImmutableEntry<>(slot, menu.getButton(slot));
+                        slot = nextSlot(slot + 1);
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ButtonsView.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Comparator<? super Integer> comparator() {
+        return null;
+    }
+
+    @Override
+    public SortedMap<Integer, MenuButton<?>> subMap(Integer fromKey, Integer toKey) {
+        if (fromKey > toKey) throw new IllegalArgumentException("fromKey > toKey: " + fromKey + " > " + toKey);
+        return new ButtonsView(menu, Math.max(from, Math.min(fromKey, to)), Math.max(from, Math.min(toKey, to)));
+    }
+
+    @Override
+    public SortedMap<Integer, MenuButton<?>> headMap(Integer toKey) {
+        return subMap(from, Math.max(from, toKey));
+    }
+
+    @Override
+    public SortedMap<Integer, MenuButton<?>> tailMap(Integer fromKey) {
+        return subMap(Math.min(fromKey, to), to);
+    }
+
+    @Override
+    public Integer firstKey() {
+        int slot = nextSlot(from);
+        if (slot == to) throw new NoSuchElementException();
+        return slot;
+    }
+
+    @Override
+    public Integer lastKey() {
+        int slot = to == 0 ? -1 : menu.previousOccupiedSlot(to - 1);
+        if (slot < from) throw new NoSuchElementException();
+        return slot;
+    }
+
+}
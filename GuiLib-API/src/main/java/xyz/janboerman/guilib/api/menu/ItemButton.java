@@ -51,7 +51,7 @@ public class ItemButton<MH extends MenuHolder<?>> implements MenuButton<MH> {
      */
     public final void setIcon(ItemStack icon) {
         stack = icon == null ? null : icon.clone();
-        inventoriesContainingMe.forEach((menuHolder, slots) -> slots.forEach(slot -> menuHolder.getInventory().setItem(slot, stack)));
+        inventoriesContainingMe.forEach((menuHolder, slots) -> slots.forEach(slot -> menuHolder.updateSlot(slot, stack)));
     }
 
     /**
@@ -1,16 +1,22 @@
 package xyz.janboerman.guilib.api.menu;
 
+import org.bukkit.entity.HumanEntity;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryType;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.InventoryView;
+import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
 import xyz.janboerman.guilib.api.GuiListener;
 import xyz.janboerman.guilib.api.GuiInventoryHolder;
+import xyz.janboerman.guilib.api.schedule.GuiScheduler;
+import xyz.janboerman.guilib.util.WeakCallbackRegistry;
 
-import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * A GuiInventoryHolder that only responds to clicks in the top inventory of the {@link InventoryView}.
@@ -19,6 +25,9 @@ import java.util.function.BiConsumer;
  * @param <P> your plugin
  *
  * @see #setButton(int, MenuButton)
+ * @see #edit(Consumer)
+ * @see #computeLayout(Consumer)
+ * @see MenuTemplate
  * @see MenuButton
  * @see ItemButton
  * @see RedirectButton
@@ -32,11 +41,25 @@ import java.util.function.BiConsumer;
  */
 public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implements Iterable<MenuButton<?>> {
 
-    private final MenuButton<?>[] buttons;
+    private MenuButton<?>[] buttons;
     private int buttonCount = 0;
-
-    private final LinkedList<WeakReference<ButtonAddCallback>> addButtonCallbacks = new LinkedList<>();
-    private final LinkedList<WeakReference<ButtonRemoveCallback>> removeButtonCallbacks = new LinkedList<>();
+    /** One bit per slot, set when the slot has a button. For chests this is a single long. */
+    private long[] occupied;
+    /** The template whose buttons are shared by this menu until this menu changes a button */
+    private final MenuTemplate template;
+    private SortedMap<Integer, MenuButton<?>> buttonsView;
+
+    private final WeakCallbackRegistry<ButtonAddCallback> addButtonCallbacks = new WeakCallbackRegistry<>();
+    private final WeakCallbackRegistry<ButtonRemoveCallback> removeButtonCallbacks = new WeakCallbackRegistry<>();
+
+    private SlotRenderer slotRenderer;
+    /** Collects the writes while nobody is viewing this menu */
+    private SlotRenderer hiddenSlots;
+    /** Whether this menu was viewed before. Writes are only held back after that, so the inventory is complete until it is opened */
+    private boolean viewedBefore;
+    private long slotWritesRequested, slotWritesPerformed;
+    /** Identifies the most recently requested layout, older layouts are discarded */
+    private int layoutTicket;
 
     /**
      * Creates the MenuHolder with the given InventoryType and title.
@@ -58,7 +81,9 @@ public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implemen
     public MenuHolder(GuiListener guiListener, P plugin, InventoryType type, String title) {
         super(guiListener, plugin, type, title);
 
-        this.buttons = new MenuButton<?>[getInventory().getSize()];
+        this.buttons = new MenuButton<?>[getInventorySize()];
+        this.occupied = new long[(buttons.length + 63) >>> 6];
+        this.template = null;
     }
 
     /**
@@ -81,7 +106,69 @@ public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implemen
     public MenuHolder(GuiListener guiListener, P plugin, int size, String title) {
         super(guiListener, plugin, size, title);
 
-        this.buttons = new MenuButton<?>[getInventory().getSize()];
+        this.buttons = new MenuButton<?>[getInventorySize()];
+        this.occupied = new long[(buttons.length + 63) >>> 6];
+        this.template = null;
+    }
+
+    /**
+     * Creates the MenuHolder with the given size and title, optionally without creating its inventory right away.
+     * @param plugin your plugin
+     * @param size the chest size (should be a multiple of 9 and between 9 - 54 (inclusive)
+     * @param title the title, or null for the default title
+     * @param lazy true if the inventory should be created when it is needed, false to create it right away
+     * @throws IllegalArgumentException if the size is not a multiple of 9 between 9 and 54
+     * @see GuiInventoryHolder#GuiInventoryHolder(GuiListener, Plugin, int, String, boolean)
+     */
+    public MenuHolder(P plugin, int size, String title, boolean lazy) throws IllegalArgumentException {
+        this(GuiListener.getInstance(), plugin, size, title, lazy);
+    }
+
+    /**
+     * Creates the MenuHolder with the given size and title, optionally without creating its inventory right away.
+     * @param plugin your plugin
+     * @param size the chest size (should be a multiple of 9 and between 9 - 54 (inclusive)
+     * @param title the title, or null for the default title
+     * @param lazy true if the inventory should be created when it is needed, false to create it right away
+     * @param guiListener the gui listener that calls the onOpen, onClick and onClose methods
+     * @throws IllegalArgumentException if the size is not a multiple of 9 between 9 and 54
+     * @see GuiInventoryHolder#GuiInventoryHolder(GuiListener, Plugin, int, String, boolean)
+     */
+    public MenuHolder(GuiListener guiListener, P plugin, int size, String title, boolean lazy) throws IllegalArgumentException {
+        super(guiListener, plugin, size, title, lazy);
+
+        this.buttons = new MenuButton<?>[getInventorySize()];
+        this.occupied = new long[(buttons.length + 63) >>> 6];
+        this.template = null;
+    }
+
+    /**
+     * Creates the MenuHolder with the given InventoryType and title, optionally without creating its inventory right away.
+     * @param plugin your plugin
+     * @param type the inventory type
+     * @param title the title, or null for the default title
+     * @param lazy true if the inventory should be created when it is needed, false to create it right away
+     * @see GuiInventoryHolder#GuiInventoryHolder(GuiListener, Plugin, InventoryType, String, boolean)
+     */
+    public MenuHolder(P plugin, InventoryType type, String title, boolean lazy) {
+        this(GuiListener.getInstance(), plugin, type, title, lazy);
+    }
+
+    /**
+     * Creates the MenuHolder with the given InventoryType and title, optionally without creating its inventory right away.
+     * @param plugin your plugin
+     * @param type the inventory type
+     * @param title the title, or null for the default title
+     * @param lazy true if the inventory should be created when it is needed, false to create it right away
+     * @param guiListener the gui listener that calls the onOpen, onClick and onClose methods
+     * @see GuiInventoryHolder#GuiInventoryHolder(GuiListener, Plugin, InventoryType, String, boolean)
+     */
+    public MenuHolder(GuiListener guiListener, P plugin, InventoryType type, String title, boolean lazy) {
+        super(guiListener, plugin, type, title, lazy);
+
+        this.buttons = new MenuButton<?>[getInventorySize()];
+        this.occupied = new long[(buttons.length + 63) >>> 6];
+        this.template = null;
     }
 
     /**
@@ -102,7 +189,9 @@ public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implemen
     public MenuHolder(GuiListener guiListener, P plugin, InventoryType type) {
         super(guiListener, plugin, type);
 
-        this.buttons = new MenuButton<?>[getInventory().getSize()];
+        this.buttons = new MenuButton<?>[getInventorySize()];
+        this.occupied = new long[(buttons.length + 63) >>> 6];
+        this.template = null;
     }
 
     /**
@@ -123,7 +212,9 @@ public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implemen
     public MenuHolder(GuiListener guiListener, P plugin, int size) {
         super(guiListener, plugin, size);
 
-        this.buttons = new MenuButton<?>[getInventory().getSize()];
+        this.buttons = new MenuButton<?>[getInventorySize()];
+        this.occupied = new long[(buttons.length + 63) >>> 6];
+        this.template = null;
     }
 
     /**
@@ -146,7 +237,34 @@ public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implemen
     public MenuHolder(GuiListener guiListener, P plugin, Inventory inventory) {
         super(guiListener, plugin, inventory);
 
-        this.buttons = new MenuButton<?>[getInventory().getSize()];
+        this.buttons = new MenuButton<?>[getInventorySize()];
+        this.occupied = new long[(buttons.length + 63) >>> 6];
+        this.template = null;
+    }
+
+    /**
+     * Creates the MenuHolder from a template. The menu shares the buttons and icons of the template until one of its buttons is changed.
+     * @param plugin your plugin
+     * @param template the template
+     */
+    public MenuHolder(P plugin, MenuTemplate template) {
+        this(GuiListener.getInstance(), plugin, template);
+    }
+
+    /**
+     * Creates the MenuHolder from a template. The menu shares the buttons and icons of the template until one of its buttons is changed.
+     * @param plugin your plugin
+     * @param template the template
+     * @param guiListener the gui listener that calls the onOpen, onClick and onClose methods
+     */
+    public MenuHolder(GuiListener guiListener, P plugin, MenuTemplate template) {
+        super(guiListener, plugin, template.getSize(), template.getTitle()); //implicit null check
+
+        this.template = template;
+        this.buttons = template.buttons;
+        this.occupied = template.occupied;
+        this.buttonCount = template.getButtonCount();
+        setContents(template.icons);
     }
 
     /**
@@ -158,10 +276,12 @@ public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implemen
     @Override
     public void onClick(InventoryClickEvent event) {
         //only use the buttons when the top inventory was clicked.
-        Inventory clickedInventory = getClickedInventory(event);
-        if (clickedInventory == null) return;
+        //no lambdas or Optionals here, clicks should not allocate.
+        int rawSlot = event.getRawSlot();
+        if (rawSlot < 0 || rawSlot >= buttons.length) return;
 
-        getButtonOptionally(event.getRawSlot()).ifPresent((MenuButton button) -> button.onClick(this, event));
+        MenuButton button = buttons[rawSlot];
+        if (button != null) button.onClick(this, event);
     }
 
     /**
@@ -178,20 +298,17 @@ public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implemen
 
         MenuButton rawButton = (MenuButton) button;
 
-        var iterator = addButtonCallbacks.iterator();
-        while (iterator.hasNext()) {
-            var nextReference = iterator.next();
-            var nextCallback = nextReference.get();
-            if (nextCallback == null) {
-                iterator.remove(); //if a callback was garbage collected, remove it from our list
-            } else {
-                if (!nextCallback.onAdd(slot, button)) return false;
-            }
+        //no iterators here, the snapshot is a plain array.
+        for (var handle : addButtonCallbacks.snapshot()) {
+            var callback = handle.callback();
+            if (callback != null && !callback.onAdd(slot, button)) return false;
         }
 
         if (rawButton.onAdd(this, slot)) {
-            getInventory().setItem(slot, button.getIcon());
+            updateSlot(slot, button.getIcon());
+            copyTemplate();
             this.buttons[slot] = button;
+            occupied[slot >>> 6] |= 1L << slot;
             buttonCount += 1;
             return true;
         } else {
@@ -222,16 +339,65 @@ public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implemen
     /**
      * Get a snapshot of all registered buttons. If no buttons are registered an empty map is returned.
      * @return a new SortedMap containing the buttons
+     * @see #getButtonsView()
      */
     public SortedMap<Integer, MenuButton<?>> getButtons() {
         var map = new TreeMap<Integer, MenuButton<?>>();
-        for (int i = 0; i < this.buttons.length; i++) {
-            MenuButton button = this.buttons[i];
-            if (button != null) map.put(i, button);
+        for (int slot = nextOccupiedSlot(0); slot < buttons.length; slot = nextOccupiedSlot(slot + 1)) {
+            map.put(slot, buttons[slot]);
         }
         return map;
     }
 
+    /**
+     * Get a read-only view of all registered buttons, sorted by slot. The view reflects later changes to this menu.
+     * Unlike {@link #getButtons()} this does not copy the buttons, and lookups in the view don't allocate.
+     * @return the unmodifiable view of the buttons
+     */
+    public SortedMap<Integer, MenuButton<?>> getButtonsView() {
+        if (buttonsView == null) buttonsView = new ButtonsView(this, 0, buttons.length);
+        return buttonsView;
+    }
+
+    //the first slot at or after the given slot that has a button, or the size of the menu if there is no such slot.
+    int nextOccupiedSlot(int slot) {
+        int word = slot >>> 6;
+        if (word >= occupied.length) return buttons.length;
+
+        long bits = occupied[word] & (-1L << slot);
+        while (bits == 0) {
+            if (++word == occupied.length) return buttons.length;
+            bits = occupied[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    //the last slot at or before the given slot that has a button, or -1 if there is no such slot.
+    int previousOccupiedSlot(int slot) {
+        if (slot < 0) return -1;
+        int word = slot >>> 6;
+
+        long bits = occupied[word] & (-1L >>> (63 - (slot & 63)));
+        while (bits == 0) {
+            if (word-- == 0) return -1;
+            bits = occupied[word];
+        }
+        return (word << 6) + 63 - Long.numberOfLeadingZeros(bits);
+    }
+
+    //the number of slots in [from, to) that have a button.
+    int countOccupiedSlots(int from, int to) {
+        int count = 0;
+        for (int word = from >>> 6; word < occupied.length && (word << 6) < to; word++) {
+            long bits = occupied[word];
+            int base = word << 6;
+            if (from > base) bits &= -1L << from;
+            if (to < base + 64) bits &= (1L << to) - 1;
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
     /**
      * Remove a button from a slot.
      * Subclasses that override this method must either call {@link MenuButton#onRemove(MenuHolder, int)} when a button is removed, or call super.unsetButton(slot).
@@ -243,20 +409,16 @@ public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implemen
         MenuButton menuButton = this.buttons[slot];
         if (menuButton == null) return true;
 
-        var iterator = removeButtonCallbacks.iterator();
-        while (iterator.hasNext()) {
-            var nextReference = iterator.next();
-            var nextCallback = nextReference.get();
-            if (nextCallback == null) {
-                iterator.remove(); //if a callback was garbage collected, remove it from our list
-            } else {
-                if (!nextCallback.onRemove(slot, menuButton)) return false;
-            }
+        for (var handle : removeButtonCallbacks.snapshot()) {
+            var callback = handle.callback();
+            if (callback != null && !callback.onRemove(slot, menuButton)) return false;
         }
 
-        if (menuButton.onRemove(this, slot)) {
+        if (isInherited(slot, menuButton) || menuButton.onRemove(this, slot)) {
+            copyTemplate();
             this.buttons[slot] = null;
-            getInventory().setItem(slot, null);
+            occupied[slot >>> 6] &= ~(1L << slot);
+            updateSlot(slot, null);
             buttonCount -= 1;
             return true;
         } else {
@@ -269,11 +431,429 @@ public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implemen
      * Subclasses that override this method must either call {@link MenuButton#onRemove(MenuHolder, int)} when a button is removed, or call super.unsetButton(slot).
      */
     public void clearButtons() {
-        for (int i = 0; i < this.buttons.length; i++) {
-            unsetButton(i);
+        for (int slot = nextOccupiedSlot(0); slot < buttons.length; slot = nextOccupiedSlot(slot + 1)) {
+            unsetButton(slot);
         }
     }
 
+    /**
+     * Sets, replaces and removes multiple buttons as a single unit.
+     * The edit stages its changes in a {@link Transaction}, which are applied once the edit returns.
+     * <p>
+     * The registered {@link ButtonRemoveCallback}s and {@link ButtonAddCallback}s are called once for the whole batch,
+     * and the icons of all changed slots are written to the inventory at once.
+     * If any of the buttons or callbacks refuses the change, or if the edit throws an exception, none of the changes are applied.
+     * <p>
+     * Subclasses that override {@link #setButton(int, MenuButton)} or {@link #unsetButton(int)} should be aware that edits don't use those methods.
+     *
+     * @param edit the edit
+     * @return true if all changes were applied, false if the changes were rolled back
+     * @see #setButtons(Map)
+     */
+    public boolean edit(Consumer<? super Transaction> edit) {
+        Objects.requireNonNull(edit, "Edit cannot be null");
+
+        Transaction transaction = new Transaction(this);
+        try {
+            edit.accept(transaction);
+        } finally {
+            transaction.open = false;
+        }
+        return commit(transaction);
+    }
+
+    /**
+     * Sets multiple buttons as a single unit. Slots that are mapped to null will have their button removed.
+     *
+     * @param buttons the slot-to-button mapping
+     * @return true if all buttons were set, false if the changes were rolled back
+     * @see #edit(Consumer)
+     */
+    public boolean setButtons(Map<Integer, ? extends MenuButton<?>> buttons) {
+        Objects.requireNonNull(buttons, "Buttons cannot be null");
+        return edit(transaction -> buttons.forEach(transaction::setButton));
+    }
+
+    /**
+     * Computes a complete layout for this menu off the main thread, and applies it to this menu as a single {@link #edit(Consumer)}.
+     * Computing icons, evaluating masks and querying data can be done in the layout, but accessing the menu or the world can not.
+     * The layout is computed using the asynchronous scheduler of the plugin.
+     * <p>
+     * The layout is discarded when the menu was being viewed when this method was called, but nobody views it anymore once the layout is computed.
+     * The layout is discarded too when a newer layout is requested before this layout is applied.
+     * <p>
+     * This method should be called on the main thread.
+     *
+     * @param layout the computation of the layout
+     * @return a future that completes with true if the layout was applied, or false if it was discarded or rolled back
+     * @see #computeLayout(Consumer, Executor)
+     */
+    public CompletableFuture<Boolean> computeLayout(Consumer<? super MenuLayout> layout) {
+        GuiScheduler scheduler = GuiScheduler.of(getPlugin());
+        return computeLayout(layout, scheduler::runTaskAsynchronously);
+    }
+
+    /**
+     * Computes a complete layout for this menu using an executor, and applies it to this menu as a single {@link #edit(Consumer)}.
+     * The layout is discarded under the same conditions as {@link #computeLayout(Consumer)}.
+     *
+     * @param layout the computation of the layout
+     * @param executor the executor that computes the layout, for example a worker pool
+     * @return a future that completes with true if the layout was applied, or false if it was discarded or rolled back
+     */
+    public CompletableFuture<Boolean> computeLayout(Consumer<? super MenuLayout> layout, Executor executor) {
+        Objects.requireNonNull(layout, "Layout cannot be null");
+        Objects.requireNonNull(executor, "Executor cannot be null");
+
+        int ticket = ++layoutTicket;
+        boolean viewed = getViewerCount() > 0;
+        //the layout is applied on the thread of a viewer, so that region-threaded servers update this menu on the right thread.
+        HumanEntity viewer = viewed ? getInventory().getViewers().stream().findFirst().orElse(null) : null;
+        MenuLayout menuLayout = new MenuLayout(buttons.length);
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        executor.execute(() -> {
+            try {
+                layout.accept(menuLayout);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+                return;
+            } finally {
+                menuLayout.close();
+            }
+
+            P plugin = getPlugin();
+            if (!plugin.isEnabled()) {
+                result.complete(false);
+                return;
+            }
+            Runnable apply = () -> {
+                try {
+                    result.complete(applyLayout(menuLayout, ticket, viewed));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            };
+            try {
+                GuiScheduler scheduler = GuiScheduler.of(plugin);
+                if (viewer == null) {
+                    scheduler.runTask(apply);
+                } else {
+                    //when the viewer leaves the server before the layout is applied, the menu was closed.
+                    scheduler.runTask(viewer, apply, () -> result.complete(false));
+                }
+            } catch (RuntimeException e) {
+                //the plugin was disabled after it was checked, so the layout can't be applied anymore.
+                result.complete(false);
+            }
+        });
+
+        return result;
+    }
+
+    private boolean applyLayout(MenuLayout layout, int ticket, boolean viewed) {
+        if (ticket != layoutTicket) return false; //a newer layout was requested
+        if (viewed && getViewerCount() == 0) return false; //the menu was closed while the layout was computed
+
+        return edit(layout::applyTo);
+    }
+
+    private boolean commit(Transaction transaction) {
+        int[] slots = new int[buttons.length];
+        int changes = 0;
+        for (int slot = 0; slot < buttons.length; slot++) {
+            if (transaction.touched[slot] && transaction.staged[slot] != buttons[slot]) slots[changes++] = slot;
+        }
+        if (changes == 0) return true;
+
+        MenuButton[] oldButtons = new MenuButton[changes];
+        MenuButton[] newButtons = new MenuButton[changes];
+        SortedMap<Integer, MenuButton<?>> removed = new TreeMap<>();
+        SortedMap<Integer, MenuButton<?>> added = new TreeMap<>();
+        for (int i = 0; i < changes; i++) {
+            int slot = slots[i];
+            oldButtons[i] = buttons[slot];
+            newButtons[i] = transaction.staged[slot];
+            if (oldButtons[i] != null) removed.put(slot, oldButtons[i]);
+            if (newButtons[i] != null) added.put(slot, newButtons[i]);
+        }
+
+        //let the buttons know first, those changes can be undone.
+        int removedCount = 0;
+        while (removedCount < changes) {
+            MenuButton oldButton = oldButtons[removedCount];
+            if (oldButton != null && !isInherited(slots[removedCount], oldButton) && !oldButton.onRemove(this, slots[removedCount])) {
+                rollback(slots, oldButtons, newButtons, removedCount, 0);
+                return false;
+            }
+            removedCount += 1;
+        }
+        int addedCount = 0;
+        while (addedCount < changes) {
+            MenuButton newButton = newButtons[addedCount];
+            if (newButton != null && !newButton.onAdd(this, slots[addedCount])) {
+                rollback(slots, oldButtons, newButtons, changes, addedCount);
+                return false;
+            }
+            addedCount += 1;
+        }
+
+        //then let the callbacks know, once per batch.
+        if (!removed.isEmpty() && !notifyRemoveCallbacks(Collections.unmodifiableSortedMap(removed))
+                || !added.isEmpty() && !notifyAddCallbacks(Collections.unmodifiableSortedMap(added))) {
+            rollback(slots, oldButtons, newButtons, changes, changes);
+            return false;
+        }
+
+        copyTemplate();
+        ItemStack[] icons = new ItemStack[changes];
+        for (int i = 0; i < changes; i++) {
+            int slot = slots[i];
+            if (oldButtons[i] != null) buttonCount -= 1;
+            if (newButtons[i] != null) buttonCount += 1;
+            buttons[slot] = newButtons[i];
+            if (newButtons[i] == null) {
+                occupied[slot >>> 6] &= ~(1L << slot);
+            } else {
+                occupied[slot >>> 6] |= 1L << slot;
+            }
+            icons[i] = newButtons[i] == null ? null : newButtons[i].getIcon();
+        }
+        updateSlots(slots, icons, changes);
+        return true;
+    }
+
+    private void rollback(int[] slots, MenuButton[] oldButtons, MenuButton[] newButtons, int removedCount, int addedCount) {
+        for (int i = 0; i < addedCount; i++) {
+            if (newButtons[i] != null) newButtons[i].onRemove(this, slots[i]);
+        }
+        for (int i = 0; i < removedCount; i++) {
+            if (oldButtons[i] != null && !isInherited(slots[i], oldButtons[i])) oldButtons[i].onAdd(this, slots[i]);
+        }
+    }
+
+    //buttons of the template were never added to this menu, so they are not removed from it either.
+    private boolean isInherited(int slot, MenuButton<?> button) {
+        return template != null && template.buttons[slot] == button;
+    }
+
+    //called before this menu changes a button, so that the template stays unchanged.
+    private void copyTemplate() {
+        if (template != null && buttons == template.buttons) {
+            buttons = buttons.clone();
+            occupied = occupied.clone();
+        }
+    }
+
+    /**
+     * Get the template that this menu was created from.
+     * @return the template, or null if this menu was not created from a template
+     */
+    public MenuTemplate getTemplate() {
+        return template;
+    }
+
+    private boolean notifyAddCallbacks(SortedMap<Integer, MenuButton<?>> added) {
+        for (var handle : addButtonCallbacks.snapshot()) {
+            var callback = handle.callback();
+            if (callback != null && !callback.onAddAll(added)) return false;
+        }
+        return true;
+    }
+
+    private boolean notifyRemoveCallbacks(SortedMap<Integer, MenuButton<?>> removed) {
+        for (var handle : removeButtonCallbacks.snapshot()) {
+            var callback = handle.callback();
+            if (callback != null && !callback.onRemoveAll(removed)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes an icon to a slot of this menu's inventory.
+     * When this menu renders deferred, the write is postponed until the next tick,
+     * otherwise the inventory is updated right away.
+     * Once this menu was viewed, while nobody is viewing it, the slot is only marked dirty, and it is rendered when the menu is viewed again.
+     *
+     * @param slot the slot number
+     * @param stack the icon, or null to clear the slot
+     * @see #setDeferredRendering(boolean)
+     */
+    protected void updateSlot(int slot, ItemStack stack) {
+        slotWritesRequested += 1;
+
+        if (slotRenderer != null) {
+            renderDeferred(slot, stack);
+        } else if (isHidden()) {
+            hiddenSlots().set(slot, stack);
+        } else {
+            flushHiddenSlots(); //older writes go first
+            setItem(slot, stack);
+            slotWritesPerformed += 1;
+        }
+    }
+
+    /**
+     * Sets the icon that is shown in a slot, without changing the button in the slot.
+     * The icon is replaced as soon as a button is set or removed at the slot, or when the button changes its icon.
+     * Like the icons of buttons, the icon is not rendered while nobody is viewing this menu,
+     * which makes this method a suitable container for animations: {@code new AnimationRunner<>(plugin, animation, menu::setIcon)}.
+     *
+     * @param slot the slot number
+     * @param icon the icon, or null to clear the slot
+     */
+    public void setIcon(int slot, ItemStack icon) {
+        Objects.checkIndex(slot, buttons.length);
+        updateSlot(slot, icon);
+    }
+
+    //writes to inventories of lazy guis that were never created are cheap already.
+    //the viewers of the inventory are checked rather than the viewer count, so that a missed open never leaves this menu blank.
+    private boolean isHidden() {
+        return viewedBefore && isInventoryMaterialized() && getInventory().getViewers().isEmpty();
+    }
+
+    private SlotRenderer hiddenSlots() {
+        if (hiddenSlots == null) hiddenSlots = new SlotRenderer(this, false);
+        return hiddenSlots;
+    }
+
+    //writes multiple slots using a single inventory update, unless this menu renders deferred.
+    void updateSlots(int[] slots, ItemStack[] stacks, int count) {
+        if (count == 1) {
+            updateSlot(slots[0], stacks[0]);
+            return;
+        }
+
+        slotWritesRequested += count;
+
+        if (slotRenderer == null && isHidden()) {
+            SlotRenderer hiddenSlots = hiddenSlots();
+            for (int i = 0; i < count; i++) {
+                hiddenSlots.set(slots[i], stacks[i]);
+            }
+        } else if (slotRenderer == null) {
+            flushHiddenSlots(); //older writes go first
+            ItemStack[] contents = getContents();
+            for (int i = 0; i < count; i++) {
+                contents[slots[i]] = stacks[i];
+            }
+            setContents(contents);
+            slotWritesPerformed += count;
+        } else {
+            for (int i = 0; i < count; i++) {
+                renderDeferred(slots[i], stacks[i]);
+            }
+        }
+    }
+
+    private void renderDeferred(int slot, ItemStack stack) {
+        //while nobody is viewing this menu the slots stay dirty until the menu is viewed.
+        if (slotRenderer.set(slot, stack) && getViewerCount() > 0) {
+            P plugin = getPlugin();
+            if (plugin.isEnabled()) {
+                //flush on the thread of a viewer, so that region-threaded servers render the slots on the right thread.
+                List<HumanEntity> viewers = getInventory().getViewers();
+                GuiScheduler scheduler = GuiScheduler.of(plugin);
+                if (viewers.isEmpty()) {
+                    scheduler.runTask(this::flushSlots);
+                } else {
+                    scheduler.runTask(viewers.get(0), this::flushSlots);
+                }
+            } else {
+                flushSlots();
+            }
+        }
+    }
+
+    /**
+     * Sets whether this menu renders deferred. A menu that renders deferred collects the slots that were changed,
+     * and writes them to its inventory at once in the next tick, on the thread of a viewer. Slots that are changed multiple times before then are written only once,
+     * and slots whose icon is equal to the icon that was rendered last are not written at all.
+     * <p>
+     * When deferred rendering is turned off, the pending slots are written right away.
+     *
+     * @param deferred true to render deferred, false to write slots immediately
+     * @apiNote While a write is pending, {@link #getInventory()} still contains the old icon.
+     */
+    public void setDeferredRendering(boolean deferred) {
+        if (deferred) {
+            flushHiddenSlots();
+            if (slotRenderer == null) slotRenderer = new SlotRenderer(this, true);
+        } else if (slotRenderer != null) {
+            flushSlots();
+            slotRenderer = null;
+        }
+    }
+
+    //used by the SlotRenderer, which can't access the protected methods.
+    ItemStack[] readSlots() {
+        return getContents();
+    }
+
+    void writeSlot(int slot, ItemStack stack) {
+        setItem(slot, stack);
+    }
+
+    void writeSlots(ItemStack[] contents) {
+        setContents(contents);
+    }
+
+    /**
+     * Tests whether this menu renders deferred.
+     * @return true if this menu renders deferred, otherwise false
+     * @see #setDeferredRendering(boolean)
+     */
+    public boolean isDeferredRendering() {
+        return slotRenderer != null;
+    }
+
+    /**
+     * Writes the slots that are pending to the inventory right away.
+     * Slots are pending when this menu renders deferred, or when they were changed while nobody was viewing this menu.
+     */
+    public void flushSlots() {
+        flushHiddenSlots();
+        if (slotRenderer != null) slotWritesPerformed += slotRenderer.flush();
+    }
+
+    private void flushHiddenSlots() {
+        if (hiddenSlots != null) {
+            slotWritesPerformed += hiddenSlots.flush();
+            hiddenSlots = null;
+        }
+    }
+
+    /**
+     * Renders the slots that were changed while nobody was viewing this menu.
+     * <p>
+     * Subclasses that override this method should always call {@code super.onViewed();}.
+     */
+    @Override
+    protected void onViewed() {
+        viewedBefore = true;
+        flushSlots();
+    }
+
+    /**
+     * Get the number of slot writes that were requested by this menu, through buttons being set, removed or updated.
+     * @return the number of requested slot writes
+     * @see #getSlotWritesPerformed()
+     */
+    public long getSlotWritesRequested() {
+        return slotWritesRequested;
+    }
+
+    /**
+     * Get the number of slot writes that actually updated the inventory of this menu.
+     * When this menu renders deferred, this number can be lower than the number of requested writes.
+     * @return the number of performed slot writes
+     * @see #getSlotWritesRequested()
+     */
+    public long getSlotWritesPerformed() {
+        return slotWritesPerformed;
+    }
+
     /**
      * Get an iterator that iterates over all buttons in this menu.
      * @return a new Iterator
@@ -290,24 +870,18 @@ public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implemen
             private void advanceTillNextButton() {
                 if (cursor == -1) cursor = 0;
 
-                while (lastFound < cursor && cursor < buttons.length) {
-                    if (buttons[cursor] != null) {
-                        lastFound = cursor;
-                        break;
-                    }
-                    cursor += 1;
+                if (lastFound < cursor && cursor < buttons.length) {
+                    cursor = nextOccupiedSlot(cursor);
+                    if (cursor < buttons.length) lastFound = cursor;
                 }
             }
 
             private void advanceTillPreviousButton() {
                 if (cursor == buttons.length) cursor -= 1;
 
-                while (cursor >= 0) {
-                    if (buttons[cursor] != null) {
-                        lastFound = cursor;
-                        break;
-                    }
-                    cursor -= 1;
+                if (cursor >= 0) {
+                    cursor = previousOccupiedSlot(cursor);
+                    if (cursor >= 0) lastFound = cursor;
                 }
             }
 
@@ -397,9 +971,8 @@ public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implemen
      * @param action the action
      */
     public void forEach(BiConsumer<Integer, ? super MenuButton<?>> action) {
-        for (int i = 0; i < buttons.length; i++) {
-            MenuButton<?> button = buttons[i];
-            if (button != null) action.accept(i, button);
+        for (int slot = nextOccupiedSlot(0); slot < buttons.length; slot = nextOccupiedSlot(slot + 1)) {
+            action.accept(slot, buttons[slot]);
         }
     }
 
@@ -411,7 +984,7 @@ public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implemen
      */
     public void addButtonAddCallback(ButtonAddCallback buttonAddListener) {
         if (buttonAddListener == null) return;
-        addButtonCallbacks.add(new WeakReference<>(buttonAddListener));
+        addButtonCallbacks.add(buttonAddListener);
     }
 
     /**
@@ -422,7 +995,17 @@ public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implemen
      */
     public void addButtonRemoveCallback(ButtonRemoveCallback buttonRemoveListener) {
         if (buttonRemoveListener == null) return;
-        removeButtonCallbacks.add(new WeakReference<>(buttonRemoveListener));
+        removeButtonCallbacks.add(buttonRemoveListener);
+    }
+
+    //same as addButtonAddCallback, but the returned handle removes the callback in constant time.
+    WeakCallbackRegistry.Handle<ButtonAddCallback> registerButtonAddCallback(ButtonAddCallback buttonAddListener) {
+        return addButtonCallbacks.add(buttonAddListener);
+    }
+
+    //same as addButtonRemoveCallback, but the returned handle removes the callback in constant time.
+    WeakCallbackRegistry.Handle<ButtonRemoveCallback> registerButtonRemoveCallback(ButtonRemoveCallback buttonRemoveListener) {
+        return removeButtonCallbacks.add(buttonRemoveListener);
     }
 
     /**
@@ -432,9 +1015,7 @@ public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implemen
      */
     public void removeButtonAddCallback(ButtonAddCallback buttonAddListener) {
         Objects.requireNonNull(buttonAddListener, "Button-Add callback cannot be null");
-        //need to use removeIf since WeakReference doesn't override equals.
-        //this doesn't matter though as the remove operation of LinkedList is O(n) anyway.
-        addButtonCallbacks.removeIf(ref -> buttonAddListener.equals(ref.get()));
+        addButtonCallbacks.remove(buttonAddListener);
     }
 
     /**
@@ -444,9 +1025,7 @@ public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implemen
      */
     public void removeButtonRemoveCallback(ButtonRemoveCallback buttonRemoveListener) {
         Objects.requireNonNull(buttonRemoveListener, "Button-Remove callback cannot be null");
-        //need to use removeIf since WeakReference doesn't override equals.
-        //this doesn't matter though as the remove operation of LinkedList is O(n) anyway.
-        removeButtonCallbacks.removeIf(ref -> buttonRemoveListener.equals(ref.get()));
+        removeButtonCallbacks.remove(buttonRemoveListener);
     }
 
     /**
@@ -458,6 +1037,20 @@ public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implemen
 
         public boolean onAdd(int slot, MenuButton<?> button);
 
+        /**
+         * Called once when multiple buttons are added to a menu as a single unit.
+         * By default this calls {@link #onAdd(int, MenuButton)} for every button.
+         * @param buttons the added buttons by slot
+         * @return true if the buttons can be added, otherwise false
+         * @see MenuHolder#edit(Consumer)
+         */
+        public default boolean onAddAll(SortedMap<Integer, MenuButton<?>> buttons) {
+            for (Map.Entry<Integer, MenuButton<?>> entry : buttons.entrySet()) {
+                if (!onAdd(entry.getKey(), entry.getValue())) return false;
+            }
+            return true;
+        }
+
     }
 
     /**
@@ -469,5 +1062,90 @@ public class MenuHolder<P extends Plugin> extends GuiInventoryHolder<P> implemen
 
         public boolean onRemove(int slot, MenuButton<?> button);
 
+        /**
+         * Called once when multiple buttons are removed from a menu as a single unit.
+         * By default this calls {@link #onRemove(int, MenuButton)} for every button.
+         * @param buttons the removed buttons by slot
+         * @return true if the buttons can be removed, otherwise false
+         * @see MenuHolder#edit(Consumer)
+         */
+        public default boolean onRemoveAll(SortedMap<Integer, MenuButton<?>> buttons) {
+            for (Map.Entry<Integer, MenuButton<?>> entry : buttons.entrySet()) {
+                if (!onRemove(entry.getKey(), entry.getValue())) return false;
+            }
+            return true;
+        }
+
+    }
+
+    /**
+     * The changes of an {@link MenuHolder#edit(Consumer)}. Changes are only staged, the menu is not updated until the edit returns.
+     * A transaction can only be used during the edit that it was passed to.
+     */
+    public static final class Transaction {
+
+        private final MenuHolder<?> menu;
+        private final MenuButton<?>[] staged;
+        private final boolean[] touched;
+        private boolean open = true;
+
+        private Transaction(MenuHolder<?> menu) {
+            this.menu = menu;
+            this.staged = new MenuButton<?>[menu.buttons.length];
+            this.touched = new boolean[menu.buttons.length];
+        }
+
+        /**
+         * Stage a button on a slot.
+         * @param slot the slot number
+         * @param button the button, or null to remove the button from the slot
+         * @return this transaction
+         * @throws IndexOutOfBoundsException if the slot is not a slot of the menu
+         * @throws IllegalStateException if the edit has already returned
+         */
+        public Transaction setButton(int slot, MenuButton<?> button) throws IndexOutOfBoundsException, IllegalStateException {
+            if (!open) throw new IllegalStateException("Transaction is no longer open");
+            Objects.checkIndex(slot, staged.length);
+
+            staged[slot] = button;
+            touched[slot] = true;
+            return this;
+        }
+
+        /**
+         * Stage the removal of the button on a slot.
+         * @param slot the slot number
+         * @return this transaction
+         * @throws IndexOutOfBoundsException if the slot is not a slot of the menu
+         * @throws IllegalStateException if the edit has already returned
+         */
+        public Transaction unsetButton(int slot) throws IndexOutOfBoundsException, IllegalStateException {
+            return setButton(slot, null);
+        }
+
+        /**
+         * Stage the removal of all buttons in the menu.
+         * @return this transaction
+         * @throws IllegalStateException if the edit has already returned
+         */
+        public Transaction clearButtons() throws IllegalStateException {
+            if (!open) throw new IllegalStateException("Transaction is no longer open");
+
+            Arrays.fill(staged, null);
+            Arrays.fill(touched, true);
+            return this;
+        }
+
+        /**
+         * Get the button that will be on the slot when this transaction is applied.
+         * @param slot the slot number
+         * @return the staged button, or the current button of the menu if the slot was not changed
+         */
+        public MenuButton<?> getButton(int slot) {
+            if (slot < 0 || slot >= staged.length) return null;
+
+            return touched[slot] ? staged[slot] : menu.buttons[slot];
+        }
+
     }
 }
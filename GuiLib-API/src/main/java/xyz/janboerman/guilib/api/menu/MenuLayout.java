@@ -0,0 +1,81 @@
+package xyz.janboerman.guilib.api.menu;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Objects;
+
+/**
+ * The complete layout of a menu, computed by {@link MenuHolder#computeLayout(java.util.function.Consumer)}.
+ * A layout is computed off the main thread, so it must not access the menu or the world. Slots without a button in the layout
+ * will have their button removed when the layout is applied.
+ * <p>
+ * A layout can only be used while it is being computed.
+ */
+public final class MenuLayout {
+
+    private final MenuButton<?>[] buttons;
+    private volatile boolean open = true;
+
+    MenuLayout(int size) {
+        this.buttons = new MenuButton<?>[size];
+    }
+
+    /**
+     * Get the number of slots of the menu.
+     * @return the size
+     */
+    public int getSize() {
+        return buttons.length;
+    }
+
+    /**
+     * Put a button on a slot.
+     * @param slot the slot number
+     * @param button the button, or null to leave the slot empty
+     * @return this layout
+     * @throws IndexOutOfBoundsException if the slot is not a slot of the menu
+     * @throws IllegalStateException if the layout was computed already
+     */
+    public MenuLayout setButton(int slot, MenuButton<?> button) throws IndexOutOfBoundsException, IllegalStateException {
+        if (!open) throw new IllegalStateException("Layout is no longer open");
+        Objects.checkIndex(slot, buttons.length);
+
+        buttons[slot] = button;
+        return this;
+    }
+
+    /**
+     * Put an icon on a slot. The icon is shown by an {@link ItemButton}, so clicking the icon does nothing.
+     * @param slot the slot number
+     * @param icon the icon, or null to leave the slot empty
+     * @return this layout
+     * @throws IndexOutOfBoundsException if the slot is not a slot of the menu
+     * @throws IllegalStateException if the layout was computed already
+     */
+    public MenuLayout setIcon(int slot, ItemStack icon) throws IndexOutOfBoundsException, IllegalStateException {
+        return setButton(slot, icon == null ? null : new ItemButton<>(icon));
+    }
+
+    /**
+     * Get the button on a slot.
+     * @param slot the slot number
+     * @return the button, or null if the slot is empty
+     */
+    public MenuButton<?> getButton(int slot) {
+        if (slot < 0 || slot >= buttons.length) return null;
+
+        return buttons[slot];
+    }
+
+    //called once the layout was computed. the layout is only read from then on.
+    void close() {
+        open = false;
+    }
+
+    void applyTo(MenuHolder.Transaction transaction) {
+        for (int slot = 0; slot < buttons.length; slot++) {
+            transaction.setButton(slot, buttons[slot]);
+        }
+    }
+
+}
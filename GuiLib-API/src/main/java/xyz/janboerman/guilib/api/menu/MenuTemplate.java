@@ -0,0 +1,136 @@
+package xyz.janboerman.guilib.api.menu;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An immutable chest menu layout that is built once and shared by many menus.
+ * <p>
+ * Menus created with {@link MenuHolder#MenuHolder(org.bukkit.plugin.Plugin, MenuTemplate)} share the buttons and icons of the template,
+ * a menu only copies the slots of the template once one of its buttons is set or removed.
+ * This way a layout that is opened by many players is only stored once, instead of once per player.
+ * <p>
+ * The buttons of a template are the same instances in every menu created from the template, they are not copied per menu.
+ * Any state that a button keeps is therefore shared by all players, which is why buttons that change their own state when they are clicked,
+ * such as {@link ToggleButton}, {@link CycleButton} and other {@link IteratingButton}s, are rejected by the template.
+ * Changing a button of the template in another way, such as {@link ItemButton#setIcon(ItemStack)},
+ * changes the button for every menu, but does not update the icons of the menus that were created from the template.
+ * <p>
+ * The buttons of a template are not added to the menus that share them, so {@link MenuButton#onAdd(MenuHolder, int)} and
+ * {@link MenuButton#onRemove(MenuHolder, int)} are not called for them.
+ * Buttons that need to know about their menus, or that keep state per player, should be set on the menu instead.
+ *
+ * @see MenuHolder#MenuHolder(org.bukkit.plugin.Plugin, MenuTemplate)
+ */
+public final class MenuTemplate {
+
+    private final int size;
+    private final String title;
+
+    final MenuButton<?>[] buttons;
+    final long[] occupied;
+    final ItemStack[] icons;
+
+    /**
+     * Creates the template.
+     * @param size the chest size (should be a multiple of 9 and between 9 - 54 (inclusive)
+     * @param title the title
+     * @param buttons the slot-to-button mapping
+     * @throws IllegalArgumentException if the size is not a valid chest size, if a button is mapped to a slot outside of the chest,
+     * or if a button changes its own state when it is clicked
+     */
+    public MenuTemplate(int size, String title, Map<Integer, ? extends MenuButton<?>> buttons) throws IllegalArgumentException {
+        this(size, title);
+        Objects.requireNonNull(buttons, "Buttons cannot be null");
+
+        buttons.forEach(this::put);
+    }
+
+    /**
+     * Creates the template.
+     * @param size the chest size (should be a multiple of 9 and between 9 - 54 (inclusive)
+     * @param title the title
+     * @param buttons the buttons by slot, null elements are empty slots
+     * @throws IllegalArgumentException if the size is not a valid chest size, if there are more buttons than slots,
+     * or if a button changes its own state when it is clicked
+     */
+    public MenuTemplate(int size, String title, MenuButton<?>[] buttons) throws IllegalArgumentException {
+        this(size, title);
+        Objects.requireNonNull(buttons, "Buttons cannot be null");
+        if (buttons.length > size) throw new IllegalArgumentException("More buttons than slots: " + buttons.length);
+
+        for (int slot = 0; slot < buttons.length; slot++) {
+            put(slot, buttons[slot]);
+        }
+    }
+
+    private MenuTemplate(int size, String title) {
+        if (size < 9 || size > 54 || size % 9 != 0) throw new IllegalArgumentException("Size must be a multiple of 9 between 9 and 54: " + size);
+
+        this.size = size;
+        this.title = Objects.requireNonNull(title, "Title cannot be null");
+        this.buttons = new MenuButton<?>[size];
+        this.occupied = new long[1];
+        this.icons = new ItemStack[size];
+    }
+
+    private void put(Integer slot, MenuButton<?> button) {
+        Objects.requireNonNull(slot, "Slot cannot be null");
+        if (slot < 0 || slot >= size) throw new IllegalArgumentException("Slot out of range: " + slot);
+        if (button == null) return;
+        if (isStateful(button)) throw new IllegalArgumentException("Button at slot " + slot + " changes its state when clicked, it can't be shared by a template: " + button);
+
+        buttons[slot] = button;
+        occupied[0] |= 1L << slot;
+        icons[slot] = button.getIcon();
+    }
+
+    //buttons that change their state on click would change it for every player of every menu that shares the template.
+    private static boolean isStateful(MenuButton<?> button) {
+        if (button instanceof IteratingButton) return true;
+        if (button instanceof SequenceButton) {
+            SequenceButton<?, ?, ?, ?> sequence = (SequenceButton<?, ?, ?, ?>) button;
+            return isStateful(sequence.getFirst()) || isStateful(sequence.getSecond());
+        }
+        if (button instanceof PredicateButton) return isStateful(((PredicateButton<?>) button).delegate);
+        return false;
+    }
+
+    /**
+     * Get the size of the menus created from this template.
+     * @return the chest size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get the title of the menus created from this template.
+     * @return the title
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Get the button at the given slot.
+     * @param slot the slot index
+     * @return the button, or null if the template has no button at the slot
+     */
+    public MenuButton<?> getButton(int slot) {
+        if (slot < 0 || slot >= size) return null;
+
+        return buttons[slot];
+    }
+
+    /**
+     * Get the number of buttons in this template.
+     * @return the number of buttons
+     */
+    public int getButtonCount() {
+        return Long.bitCount(occupied[0]);
+    }
+
+}
@@ -11,9 +11,13 @@ import org.bukkit.plugin.Plugin;
 import xyz.janboerman.guilib.api.GuiListener;
 import xyz.janboerman.guilib.api.GuiInventoryHolder;
 import xyz.janboerman.guilib.api.ItemBuilder;
+import xyz.janboerman.guilib.api.schedule.GuiScheduler;
 import xyz.janboerman.guilib.util.CachedSupplier;
+import xyz.janboerman.guilib.util.WeakCallbackRegistry;
 
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -27,6 +31,9 @@ public class PageMenu<P extends Plugin> extends MenuHolder<P> implements MenuHol
 
     private static final ItemStack DEFAULT_PREVIOUS_PAGE_BUTTON = new ItemBuilder(Material.MAGENTA_GLAZED_TERRACOTTA).name("Previous").build();
     private static final ItemStack DEFAULT_NEXT_PAGE_BUTTON = new ItemBuilder(Material.MAGENTA_GLAZED_TERRACOTTA).name("Next").build();
+    private static final ItemStack DEFAULT_FIRST_PAGE_BUTTON = new ItemBuilder(Material.MAGENTA_GLAZED_TERRACOTTA).name("First").build();
+    private static final ItemStack DEFAULT_LAST_PAGE_BUTTON = new ItemBuilder(Material.MAGENTA_GLAZED_TERRACOTTA).name("Last").build();
+    private static final ItemStack DEFAULT_LOADING_PAGE_BUTTON = new ItemBuilder(Material.CLOCK).name("Loading...").build();
 
     private final String title;
 
@@ -48,6 +55,20 @@ public class PageMenu<P extends Plugin> extends MenuHolder<P> implements MenuHol
     /** hack to initialize the buttons when the inventory is opened for the first time */
     private boolean weHaveBeenOpened;
 
+    /** Whether events for the page are called through the PluginManager, instead of being delegated to the page directly */
+    private boolean callProxyEvents;
+    /** The view that was proxied most recently. Reused for subsequent events of the same view */
+    private ProxyView proxyView;
+
+    /** The window that created this menu and the index of this menu's page, if this menu was created from an indexed source */
+    PageWindow<P> pageWindow;
+    int pageIndex = -1;
+    /** Incremented for every page request, so that pages that finish loading after the player requested another page are not shown */
+    private int navigationTicket;
+    /** Our registrations as button callbacks of the rendered page, if it is a menu */
+    private WeakCallbackRegistry.Handle<ButtonAddCallback> addCallbackHandle;
+    private WeakCallbackRegistry.Handle<ButtonRemoveCallback> removeCallbackHandle;
+
     /**
      * Creates a page menu.
      * @param plugin your plugin
@@ -180,6 +201,21 @@ public class PageMenu<P extends Plugin> extends MenuHolder<P> implements MenuHol
         addButtonListeners(); //receive inventory updates from the page.
     }
 
+    //used for pages that are created ahead of time, their inventory is created when they are opened.
+    PageMenu(GuiListener guiListener, P plugin, GuiInventoryHolder page, String title, Supplier<PageMenu<P>> previous, Supplier<PageMenu<P>> next, ItemStack previousPageButton, ItemStack nextPageButton, boolean lazy) throws IllegalArgumentException {
+        super(guiListener, plugin, calculateInnerPageSize(page) + 9, title, lazy);
+        this.myPage = page;
+        this.previousButtonIndex = this.renderedPreviousIndex = calculateInnerPageSize(myPage) + 2;
+        this.nextButtonIndex = this.renderedNextIndex = calculateInnerPageSize(myPage) + 6;
+        this.previousPageSupplier =  previous;
+        this.nextPageSupplier = next;
+        this.previousPageButton = this.renderedPreviousStack = previousPageButton;
+        this.nextPageButton = this.renderedNextStack = nextPageButton;
+        this.title = title;
+
+        addButtonListeners(); //receive inventory updates from the page.
+    }
+
     /**
      * Tests whether this PageMenu implementation requires the next-page and previous-page buttons to use redirects (inventory re-opens).
      * @return true if a re-open is a hard requirement for the next-page and previous-page buttons
@@ -188,6 +224,29 @@ public class PageMenu<P extends Plugin> extends MenuHolder<P> implements MenuHol
         return getClass() != PageMenu.class;
     }
 
+    /**
+     * Set whether events for the page are called through the server's PluginManager.
+     * <p>
+     * By default the page's {@link GuiInventoryHolder#onOpen(InventoryOpenEvent)}, {@link GuiInventoryHolder#onClick(InventoryClickEvent)},
+     * {@link GuiInventoryHolder#onDrag(InventoryDragEvent)} and {@link GuiInventoryHolder#onClose(InventoryCloseEvent)} methods are called directly,
+     * so that other plugins' inventory listeners don't have to process the proxy events.
+     * Enable this if your own event listeners need to observe the events of pages.
+     *
+     * @param callProxyEvents true if events for the page should be called through the PluginManager, otherwise false
+     */
+    public void setCallProxyEvents(boolean callProxyEvents) {
+        this.callProxyEvents = callProxyEvents;
+    }
+
+    /**
+     * Tests whether events for the page are called through the server's PluginManager.
+     * @return true if the events for the page are observable by event listeners, false if they are delegated to the page directly
+     * @see #setCallProxyEvents(boolean)
+     */
+    public boolean isCallingProxyEvents() {
+        return callProxyEvents;
+    }
+
     /**
      * Gets the page menu that is the hosting the next- and previous-buttons shown to the player.
      * @return the hosting page
@@ -225,7 +284,52 @@ public class PageMenu<P extends Plugin> extends MenuHolder<P> implements MenuHol
      * @return the size of the embedded page
      */
     public int getPageSize() {
-        return getPage().getInventory().getSize();
+        return getPage().getInventorySize();
+    }
+
+    /**
+     * Get the index of the page that is currently rendered by the menu.
+     * @return the Optional containing the page index if the pages were created from an indexed source, otherwise the empty Optional
+     * @see #create(Plugin, int, IntFunction, int)
+     */
+    public OptionalInt getPageIndex() {
+        PageMenu<P> rendered = getRenderedPage();
+        return rendered.pageWindow == null ? OptionalInt.empty() : OptionalInt.of(rendered.pageIndex);
+    }
+
+    /**
+     * Get the total number of pages.
+     * @return the Optional containing the number of pages if the pages were created from an indexed source, otherwise the empty Optional
+     * @see #create(Plugin, int, IntFunction, int)
+     */
+    public OptionalInt getPageCount() {
+        PageMenu<P> rendered = getRenderedPage();
+        return rendered.pageWindow == null ? OptionalInt.empty() : OptionalInt.of(rendered.pageWindow.getPageCount());
+    }
+
+    /**
+     * Shows the page with the given index in the view. Only the requested page is built.
+     * If the pages are loaded asynchronously and the page is not loaded yet, the page is shown once it is loaded,
+     * unless another page is requested or the player closes the menu in the meantime.
+     * This method can only be used for menus whose pages were created from an indexed source.
+     * @param pageIndex the index of the page
+     * @param view the view of the player that is looking at this menu
+     * @throws IllegalStateException if the pages were not created from an indexed source
+     * @throws IllegalArgumentException if the page index is negative, or not smaller than the number of pages
+     * @see #create(Plugin, int, IntFunction, int)
+     */
+    public void jumpToPage(int pageIndex, InventoryView view) throws IllegalStateException, IllegalArgumentException {
+        PageWindow<P> window = getRenderedPage().pageWindow;
+        if (window == null) throw new IllegalStateException("This menu was not created from an indexed source");
+        if (pageIndex < 0 || pageIndex >= window.getPageCount()) throw new IllegalArgumentException("Page index out of range: " + pageIndex);
+        if (pageIndex == getRenderedPage().pageIndex) return;
+
+        int ticket = ++navigationTicket;
+        window.request(pageIndex, this, pageMenu -> {
+            if (ticket == navigationTicket && view.getPlayer().getOpenInventory().getTopInventory() == getInventory()) {
+                switchToPage(window.navigate(pageIndex), view);
+            }
+        });
     }
 
     /**
@@ -262,6 +366,9 @@ public class PageMenu<P extends Plugin> extends MenuHolder<P> implements MenuHol
 
     /**
      * Create pages from a series of GUIs.
+     * <p>
+     * Pages created by this method stay reachable from each other once they have been visited.
+     * For large numbers of pages, consider using {@link #create(Plugin, int, IntFunction, int)} instead.
      * @param plugin your plugin
      * @param pageSupplier the iterator that supplies pages - must have at least one element and can be infinite
      * @param <P> your Plugin type
@@ -310,6 +417,132 @@ public class PageMenu<P extends Plugin> extends MenuHolder<P> implements MenuHol
         return create(plugin, title, Objects.requireNonNull(pageSupplier, "PageSupplier cannot be null"), null, previousPageButton, nextPageButton);
     }
 
+    /**
+     * Create pages from an indexed source of GUIs.
+     * Only the menus of the pages within {@code windowRadius} pages of the page that was navigated to most recently are kept,
+     * the other pages are rebuilt from the source when the player navigates to them again.
+     * @param plugin your plugin
+     * @param pageCount the number of pages - must be at least 1
+     * @param pages the function that creates the page for a page index - is called again for pages that were evicted
+     * @param windowRadius the number of pages before and after the current page that are kept
+     * @param <P> your Plugin type
+     * @return the menu containing the first page
+     * @throws IllegalArgumentException if the page count is smaller than 1, or if the window radius is negative
+     */
+    public static <P extends Plugin> PageMenu<P> create(P plugin, int pageCount, IntFunction<? extends GuiInventoryHolder<?>> pages, int windowRadius) throws IllegalArgumentException {
+        return create(plugin, pageCount, pages, windowRadius, DEFAULT_PREVIOUS_PAGE_BUTTON.clone(), DEFAULT_NEXT_PAGE_BUTTON.clone());
+    }
+
+    /**
+     * Create pages from an indexed source of GUIs.
+     * Only the menus of the pages within {@code windowRadius} pages of the page that was navigated to most recently are kept,
+     * the other pages are rebuilt from the source when the player navigates to them again.
+     * @param plugin your plugin
+     * @param title the title of the pages
+     * @param pageCount the number of pages - must be at least 1
+     * @param pages the function that creates the page for a page index - is called again for pages that were evicted
+     * @param windowRadius the number of pages before and after the current page that are kept
+     * @param <P> your Plugin type
+     * @return the menu containing the first page
+     * @throws IllegalArgumentException if the page count is smaller than 1, or if the window radius is negative
+     */
+    public static <P extends Plugin> PageMenu<P> create(P plugin, String title, int pageCount, IntFunction<? extends GuiInventoryHolder<?>> pages, int windowRadius) throws IllegalArgumentException {
+        return create(plugin, title, pageCount, pages, windowRadius, DEFAULT_PREVIOUS_PAGE_BUTTON.clone(), DEFAULT_NEXT_PAGE_BUTTON.clone());
+    }
+
+    /**
+     * Create pages from an indexed source of GUIs.
+     * Only the menus of the pages within {@code windowRadius} pages of the page that was navigated to most recently are kept,
+     * the other pages are rebuilt from the source when the player navigates to them again.
+     * @param plugin your plugin
+     * @param pageCount the number of pages - must be at least 1
+     * @param pages the function that creates the page for a page index - is called again for pages that were evicted
+     * @param windowRadius the number of pages before and after the current page that are kept
+     * @param previousPageButton the ItemStack used for the previous-page button
+     * @param nextPageButton the ItemStack used for the next-page button
+     * @param <P> your Plugin type
+     * @return the menu containing the first page
+     * @throws IllegalArgumentException if the page count is smaller than 1, or if the window radius is negative
+     */
+    public static <P extends Plugin> PageMenu<P> create(P plugin, int pageCount, IntFunction<? extends GuiInventoryHolder<?>> pages, int windowRadius, ItemStack previousPageButton, ItemStack nextPageButton) throws IllegalArgumentException {
+        return create(plugin, null, pageCount, pages, windowRadius, previousPageButton, nextPageButton);
+    }
+
+    /**
+     * Create pages from an indexed source of GUIs.
+     * Only the menus of the pages within {@code windowRadius} pages of the page that was navigated to most recently are kept,
+     * the other pages are rebuilt from the source when the player navigates to them again.
+     * @param plugin your plugin
+     * @param title the title of the pages - can be null
+     * @param pageCount the number of pages - must be at least 1
+     * @param pages the function that creates the page for a page index - is called again for pages that were evicted
+     * @param windowRadius the number of pages before and after the current page that are kept
+     * @param previousPageButton the ItemStack used for the previous-page button
+     * @param nextPageButton the ItemStack used for the next-page button
+     * @param <P> your Plugin type
+     * @return the menu containing the first page
+     * @throws IllegalArgumentException if the page count is smaller than 1, or if the window radius is negative
+     */
+    public static <P extends Plugin> PageMenu<P> create(P plugin, String title, int pageCount, IntFunction<? extends GuiInventoryHolder<?>> pages, int windowRadius, ItemStack previousPageButton, ItemStack nextPageButton) throws IllegalArgumentException {
+        Objects.requireNonNull(pages, "Pages cannot be null");
+        return new PageWindow<>(plugin, title, pageCount, pages, windowRadius, previousPageButton, nextPageButton).navigate(0);
+    }
+
+    /**
+     * Create pages from an indexed source of GUIs whose contents are loaded asynchronously.
+     * When a page is opened, the data of the next and previous pages is loaded off the main thread. Only the page GUIs are built on the main thread.
+     * Until the data of a page is loaded, the button that leads to it shows a placeholder icon.
+     * Loads of pages that the player navigated away from are cancelled.
+     * <p>
+     * The data for the first page is loaded on the calling thread.
+     * @param plugin your plugin
+     * @param title the title of the pages
+     * @param pageCount the number of pages - must be at least 1
+     * @param loadPage the function that loads the data for a page index - is called off the main thread
+     * @param buildPage the function that builds the page from the data - is called on the main thread
+     * @param windowRadius the number of pages before and after the current page that are kept
+     * @param <P> your Plugin type
+     * @param <D> the type of the page data
+     * @return the menu containing the first page
+     * @throws IllegalArgumentException if the page count is smaller than 1, or if the window radius is negative
+     */
+    public static <P extends Plugin, D> PageMenu<P> create(P plugin, String title, int pageCount, IntFunction<? extends D> loadPage, Function<? super D, ? extends GuiInventoryHolder<?>> buildPage, int windowRadius) throws IllegalArgumentException {
+        return create(plugin, title, pageCount, loadPage, buildPage, windowRadius, DEFAULT_PREVIOUS_PAGE_BUTTON.clone(), DEFAULT_NEXT_PAGE_BUTTON.clone(), DEFAULT_LOADING_PAGE_BUTTON.clone());
+    }
+
+    /**
+     * Create pages from an indexed source of GUIs whose contents are loaded asynchronously.
+     * When a page is opened, the data of the next and previous pages is loaded off the main thread. Only the page GUIs are built on the main thread.
+     * Until the data of a page is loaded, the button that leads to it shows a placeholder icon.
+     * Loads of pages that the player navigated away from are cancelled.
+     * <p>
+     * The data for the first page is loaded on the calling thread.
+     * @param plugin your plugin
+     * @param title the title of the pages - can be null
+     * @param pageCount the number of pages - must be at least 1
+     * @param loadPage the function that loads the data for a page index - is called off the main thread
+     * @param buildPage the function that builds the page from the data - is called on the main thread
+     * @param windowRadius the number of pages before and after the current page that are kept
+     * @param previousPageButton the ItemStack used for the previous-page button
+     * @param nextPageButton the ItemStack used for the next-page button
+     * @param placeholderButton the ItemStack used for buttons whose page is still loading
+     * @param <P> your Plugin type
+     * @param <D> the type of the page data
+     * @return the menu containing the first page
+     * @throws IllegalArgumentException if the page count is smaller than 1, or if the window radius is negative
+     */
+    public static <P extends Plugin, D> PageMenu<P> create(P plugin, String title, int pageCount, IntFunction<? extends D> loadPage, Function<? super D, ? extends GuiInventoryHolder<?>> buildPage, int windowRadius,
+                                                           ItemStack previousPageButton, ItemStack nextPageButton, ItemStack placeholderButton) throws IllegalArgumentException {
+        Objects.requireNonNull(loadPage, "LoadPage cannot be null");
+        Objects.requireNonNull(buildPage, "BuildPage cannot be null");
+
+        IntFunction<Supplier<GuiInventoryHolder<?>>> asyncPages = pageIndex -> {
+            D data = loadPage.apply(pageIndex);
+            return () -> buildPage.apply(data);
+        };
+        return new PageWindow<>(plugin, title, pageCount, asyncPages, windowRadius, previousPageButton, nextPageButton, placeholderButton).navigate(0);
+    }
+
     //private because the previous page supplier argument can only be provided by recursive calls.
     private static <P extends Plugin> PageMenu<P> create(P plugin, Iterator<? extends GuiInventoryHolder<?>> nextSupplier, Supplier<PageMenu<P>> previous, ItemStack previousPageButton, ItemStack nextPageButton) {
         GuiInventoryHolder<?> page = nextSupplier.next();
@@ -339,29 +572,35 @@ public class PageMenu<P extends Plugin> extends MenuHolder<P> implements MenuHol
      * Updates the view of page that is contained by this menu.
      */
     public void updateView() {
+        //the page itself is never viewed, so let it render the icons it held back.
+        if (getPage() instanceof MenuHolder) ((MenuHolder<?>) getPage()).flushSlots();
+
         //copy icons from the page back to my inventory
         for (int index = 0; index < getPageSize(); index++) {
-            getInventory().setItem(index, getPage().getInventory().getItem(index));
+            updateSlot(index, getPage().getInventory().getItem(index));
         }
     }
 
     //called from our constructors - needed to update our inventory when the page's inventory updates.
     private void addButtonListeners() {
+        removeButtonListeners(); //never register twice
         GuiInventoryHolder<?> page = getPage();
         if (page instanceof MenuHolder) {
             MenuHolder<?> menuPage = (MenuHolder<?>) page;
-            menuPage.addButtonAddCallback(this);
-            menuPage.addButtonRemoveCallback(this);
+            addCallbackHandle = menuPage.registerButtonAddCallback(this);
+            removeCallbackHandle = menuPage.registerButtonRemoveCallback(this);
         }
     }
 
     //called when we no longer need to receive inventory updates from our page.
     private void removeButtonListeners() {
-        GuiInventoryHolder<?> page = getPage();
-        if (page instanceof MenuHolder) {
-            MenuHolder<?> menuPage = (MenuHolder<?>) page;
-            menuPage.removeButtonAddCallback(this);
-            menuPage.removeButtonRemoveCallback(this);
+        if (addCallbackHandle != null) {
+            addCallbackHandle.unregister();
+            addCallbackHandle = null;
+        }
+        if (removeCallbackHandle != null) {
+            removeCallbackHandle.unregister();
+            removeCallbackHandle = null;
         }
     }
 
@@ -377,7 +616,20 @@ public class PageMenu<P extends Plugin> extends MenuHolder<P> implements MenuHol
     public boolean onAdd(int slot, MenuButton button) {
         //called when the button is added to the page that we hold.
         //in that case, we want to set the icon ItemStack in our inventory.
-        getPage().getInventory().setItem(slot, button.getIcon());
+        if (isPageSlot(slot)) updateSlot(slot, button.getIcon());
+        return true;
+    }
+
+    /**
+     * Callback method that is called when multiple buttons are added in the page that this menu contains at once.
+     * This callback adds the icons to the inventory of this PageMenu using a single update.
+     *
+     * @param buttons the buttons that were added to the page
+     * @return true
+     */
+    @Override
+    public boolean onAddAll(SortedMap<Integer, MenuButton<?>> buttons) {
+        updateOwnPageSlots(buttons, true);
         return true;
     }
 
@@ -393,10 +645,43 @@ public class PageMenu<P extends Plugin> extends MenuHolder<P> implements MenuHol
     public boolean onRemove(int slot, MenuButton button) {
         //called when the button is removed from the page that we hold.
         //in that case, we want to remove the icon ItemStack from our inventory
-        getPage().getInventory().setItem(slot, null);
+        if (isPageSlot(slot)) updateSlot(slot, null);
+        return true;
+    }
+
+    /**
+     * Callback method that is called when multiple buttons are removed from the page that this menu contains at once.
+     * This callback removes the icons from the inventory of this PageMenu using a single update.
+     *
+     * @param buttons the buttons that were removed from the page
+     * @return true
+     */
+    @Override
+    public boolean onRemoveAll(SortedMap<Integer, MenuButton<?>> buttons) {
+        updateOwnPageSlots(buttons, false);
         return true;
     }
 
+    //we are only registered as a callback of the page that we render, so only the slot needs to be checked.
+    private boolean isPageSlot(int slot) {
+        return slot < getPageSize();
+    }
+
+    private void updateOwnPageSlots(SortedMap<Integer, MenuButton<?>> buttons, boolean added) {
+        int[] slots = new int[buttons.size()];
+        ItemStack[] icons = new ItemStack[buttons.size()];
+        int count = 0;
+        for (Map.Entry<Integer, MenuButton<?>> entry : buttons.entrySet()) {
+            int slot = entry.getKey();
+            if (isPageSlot(slot)) {
+                slots[count] = slot;
+                icons[count] = added ? entry.getValue().getIcon() : null;
+                count += 1;
+            }
+        }
+        if (count > 0) updateSlots(slots, icons, count);
+    }
+
     /**
      * Initialises the page view as well as previous-page and next-page buttons.
      */
@@ -404,118 +689,156 @@ public class PageMenu<P extends Plugin> extends MenuHolder<P> implements MenuHol
 
         //if the page is a menu, then we want to add those buttons to us so that we get icon updates
 
-        int currentInvSize = getPageSize();
-
         //needed for itembuttons that change their itemstack in a bukkit task.
         //is it worth it to cascade those updates into the PageMenu? because this code is not type-safe.
 //        GuiInventoryHolder<?> page = getPage();
 //        if (page instanceof MenuHolder) {
 //            MenuHolder<?> menu = (MenuHolder<?>) page;
-//            for (int i = 0; i < currentInvSize; i++) {
+//            for (int i = 0; i < getPageSize(); i++) {
 //                MenuButton button = menu.getButton(i);
 //                if (button != null) button.onAdd(this,  i);
 //            }
 //        }
 
-        //reset next-page and previous-page buttons
-        getRenderedPage().getNextPageMenu().ifPresentOrElse(next -> {
-
-            MenuButton toNextPageButton = new ItemButton(renderedNextStack) {
-                @Override
-                public void onClick(MenuHolder holder, InventoryClickEvent event) {
-                    PageMenu<P> nextPageMenu = next.get();
-                    GuiInventoryHolder<?> nextPage = nextPageMenu.getOwnedPage();
-                    Inventory nextInventory = nextPage.getInventory();
-                    //determine whether a re-open is required
-                    if (!needsRedirects() && nextInventory.getSize() == currentInvSize && Objects.equals(nextPageMenu.title, title)) {
-                        //no redirect required.
-
-                        //call InventoryCloseEvent for the currently-rendered page
-                        InventoryCloseEvent proxyCloseEvent = new InventoryCloseEvent(event.getView());
-                        getPlugin().getServer().getPluginManager().callEvent(proxyCloseEvent);
-
-                        //copy stuff over to our own inventory and reset the buttons.
-                        removeButtonListeners();
-                        renderedPage = nextPageMenu;
-                        renderedPage.hostingPage = PageMenu.this;
-                        addButtonListeners();
-                        renderedPreviousIndex = renderedPage.previousButtonIndex;
-                        renderedNextIndex = renderedPage.nextButtonIndex;
-                        renderedPreviousStack = renderedPage.previousPageButton;
-                        renderedNextStack = renderedPage.nextPageButton;
-
-                        //call InventoryOpenEvent for tne newly-rendered page
-                        weHaveBeenOpened = false;
-                        InventoryOpenEvent proxyOpenEvent = new InventoryOpenEvent(event.getView());
-                        getPlugin().getServer().getPluginManager().callEvent(proxyOpenEvent);
-
-                        //update view
-                        updateView();
-
-                    } else {
-                        //redirect required
-                        holder.getPlugin().getServer().getScheduler().runTask(holder.getPlugin(), () -> {
-                            event.getView().close();
-                            event.getWhoClicked().openInventory(nextPageMenu.getInventory());
-                        });
-                    }
-                }
-            };
+        PageWindow<P> window = getRenderedPage().pageWindow;
+        if (window == null) {
+            //reset next-page and previous-page buttons
+            Supplier<PageMenu<P>> next = getRenderedPage().nextPageSupplier;
+            if (next != null) {
+                this.setButton(renderedNextIndex, new SwitchPageButton(renderedNextStack, next));
+            } else {
+                this.unsetButton(renderedNextIndex);
+            }
+
+            Supplier<PageMenu<P>> previous = getRenderedPage().previousPageSupplier;
+            if (previous != null) {
+                this.setButton(renderedPreviousIndex, new SwitchPageButton(renderedPreviousStack, previous));
+            } else {
+                this.unsetButton(renderedPreviousIndex);
+            }
+        } else {
+            //reset the buttons for pages that were created from an indexed source
+            int index = getRenderedPage().pageIndex;
+            int lastIndex = window.getPageCount() - 1;
+            int firstButtonIndex = renderedPreviousIndex - 2, indicatorIndex = renderedPreviousIndex + 2, lastButtonIndex = renderedPreviousIndex + 6;
+
+            resetJumpButton(window, firstButtonIndex, DEFAULT_FIRST_PAGE_BUTTON.clone(), 0, false);
+            resetJumpButton(window, renderedPreviousIndex, renderedPreviousStack, index - 1, true);
+            this.setButton(indicatorIndex, new ItemButton<>(new ItemBuilder(Material.PAPER)
+                    .name("Page " + (index + 1) + "/" + (lastIndex + 1))
+                    .amount(Math.min(index + 1, 64))
+                    .build()));
+            resetJumpButton(window, renderedNextIndex, renderedNextStack, index + 1, true);
+            resetJumpButton(window, lastButtonIndex, DEFAULT_LAST_PAGE_BUTTON.clone(), lastIndex, false);
+        }
+    }
 
-            this.setButton(renderedNextIndex, toNextPageButton);
+    //prefetched pages are loaded as soon as the button is set. until then the button shows the placeholder.
+    private void resetJumpButton(PageWindow<P> window, int slot, ItemStack icon, int pageIndex, boolean prefetch) {
+        PageMenu<P> rendered = getRenderedPage();
+        if (pageIndex < 0 || pageIndex >= window.getPageCount() || pageIndex == rendered.pageIndex) {
+            this.unsetButton(slot);
+        } else if (!prefetch || window.isReady(pageIndex)) {
+            this.setButton(slot, new JumpToPageButton(icon, pageIndex));
+        } else {
+            this.setButton(slot, new JumpToPageButton(window.getPlaceholderButton(), pageIndex));
+            window.prefetch(pageIndex, this, loaded -> {
+                //show the real icon once the page is loaded, if we still render the same page.
+                if (getRenderedPage() == rendered) resetButtons();
+            });
+        }
+    }
 
-        }, /*next page not present*/ () -> {
-            this.unsetButton(renderedNextIndex);
-        });
+    //called by the next-page, previous-page, first-page and last-page buttons.
+    private void switchToPage(PageMenu<P> pageMenu, InventoryView view) {
+        Inventory pageInventory = pageMenu.getOwnedPage().getInventory();
+        //determine whether a re-open is required
+        if (!needsRedirects() && pageInventory.getSize() == getPageSize() && Objects.equals(pageMenu.title, title)) {
+            //no redirect required.
+
+            //call InventoryCloseEvent for the currently-rendered page
+            delegateToSelf(new InventoryCloseEvent(view));
+
+            //copy stuff over to our own inventory and reset the buttons.
+            removeButtonListeners();
+            renderedPage = pageMenu;
+            renderedPage.hostingPage = this;
+            addButtonListeners();
+            renderedPreviousIndex = renderedPage.previousButtonIndex;
+            renderedNextIndex = renderedPage.nextButtonIndex;
+            renderedPreviousStack = renderedPage.previousPageButton;
+            renderedNextStack = renderedPage.nextPageButton;
+
+            //call InventoryOpenEvent for tne newly-rendered page
+            weHaveBeenOpened = false;
+            delegateToSelf(new InventoryOpenEvent(view));
+
+            //update view
+            updateView();
 
-        getRenderedPage().getPreviousPageMenu().ifPresentOrElse(previous -> {
-            //TODO un-duplicate this code?
-            MenuButton toPreviousPageButton = new ItemButton(renderedPreviousStack) {
-                @Override
-                public void onClick(MenuHolder holder, InventoryClickEvent event) {
-                    PageMenu<P> previousPageMenu = previous.get();
-                    GuiInventoryHolder<?> previousPage = previousPageMenu.getOwnedPage();
-                    Inventory previousInventory = previousPage.getInventory();
-                    //determine whether a re-open is required
-                    if (!needsRedirects() && previousInventory.getSize() == currentInvSize && Objects.equals(previousPageMenu.title, title)) {
-                        //no redirect required
-
-                        //call InventoryCloseEvent for the currently-rendered page
-                        InventoryCloseEvent proxyCloseEvent = new InventoryCloseEvent(event.getView());
-                        getPlugin().getServer().getPluginManager().callEvent(proxyCloseEvent);
-
-                        //copy stuff over to our own inventory and reset the buttons.
-                        removeButtonListeners();
-                        renderedPage = previousPageMenu;
-                        renderedPage.hostingPage = PageMenu.this;
-                        addButtonListeners();
-                        renderedPreviousIndex = renderedPage.previousButtonIndex;
-                        renderedNextIndex = renderedPage.nextButtonIndex;
-                        renderedPreviousStack = renderedPage.previousPageButton;
-                        renderedNextStack = renderedPage.nextPageButton;
-
-                        //call InventoryOpenEvent for tne newly-rendered page
-                        weHaveBeenOpened = false;
-                        InventoryOpenEvent proxyOpenEvent = new InventoryOpenEvent(event.getView());
-                        getPlugin().getServer().getPluginManager().callEvent(proxyOpenEvent);
-
-                        //update view
-                        updateView();
-
-                    } else {
-                        //redirect required
-                        holder.getPlugin().getServer().getScheduler().runTask(holder.getPlugin(), () -> {
-                            event.getView().close();
-                            event.getWhoClicked().openInventory(previousPageMenu.getInventory());
-                        });
-                    }
-                }
-            };
+        } else {
+            //redirect required
+            HumanEntity player = view.getPlayer();
+            GuiScheduler.of(getPlugin()).runTask(player, () -> {
+                view.close();
+                player.openInventory(pageMenu.getInventory());
+            });
+        }
+    }
 
-            this.setButton(renderedPreviousIndex, toPreviousPageButton);
-        }, /*previous page not present*/ () -> {
-            this.unsetButton(renderedPreviousIndex);
-        });
+    private class SwitchPageButton extends ItemButton<PageMenu<P>> {
+        private final Supplier<PageMenu<P>> pageMenu;
+
+        private SwitchPageButton(ItemStack icon, Supplier<PageMenu<P>> pageMenu) {
+            super(icon);
+            this.pageMenu = pageMenu;
+        }
+
+        @Override
+        public void onClick(PageMenu<P> holder, InventoryClickEvent event) {
+            switchToPage(pageMenu.get(), event.getView());
+        }
+    }
+
+    private class JumpToPageButton extends ItemButton<PageMenu<P>> {
+        private final int pageIndex;
+
+        private JumpToPageButton(ItemStack icon, int pageIndex) {
+            super(icon);
+            this.pageIndex = pageIndex;
+        }
+
+        @Override
+        public void onClick(PageMenu<P> holder, InventoryClickEvent event) {
+            jumpToPage(pageIndex, event.getView());
+        }
+    }
+
+    //the view can be reused, because its top inventory is always the page that is currently rendered.
+    private ProxyView getProxyView(InventoryView original) {
+        ProxyView proxy = proxyView;
+        if (proxy == null || proxy.original != original) {
+            proxyView = proxy = new ProxyView(original);
+        }
+        return proxy;
+    }
+
+    //delegates an event to the page that is currently rendered.
+    private void delegateToPage(InventoryEvent proxyEvent) {
+        if (callProxyEvents) {
+            guiListener.callProxyEvent(getPlugin(), proxyEvent);
+        } else {
+            guiListener.delegateEvent(getPage(), proxyEvent);
+        }
+    }
+
+    //delegates an event to this menu, as if it were called by the server.
+    private void delegateToSelf(InventoryEvent event) {
+        if (callProxyEvents) {
+            guiListener.callProxyEvent(getPlugin(), event);
+        } else {
+            guiListener.delegateEvent(this, event);
+        }
     }
 
     /**
@@ -525,8 +848,7 @@ public class PageMenu<P extends Plugin> extends MenuHolder<P> implements MenuHol
     @Override
     public void onOpen(InventoryOpenEvent openEvent) {
         //delegate event to myPage
-        InventoryOpenEvent proxyEvent = new InventoryOpenEvent(new ProxyView(openEvent.getView()));
-        getPlugin().getServer().getPluginManager().callEvent(proxyEvent);
+        delegateToPage(new InventoryOpenEvent(getProxyView(openEvent.getView())));
 
         if (!weHaveBeenOpened) {
             //reset buttons on first open.
@@ -546,8 +868,8 @@ public class PageMenu<P extends Plugin> extends MenuHolder<P> implements MenuHol
     @Override
     public void onClose(InventoryCloseEvent closeEvent) {
         //delegate event to myPage
-        InventoryCloseEvent proxyEvent = new InventoryCloseEvent(new ProxyView(closeEvent.getView()));
-        getPlugin().getServer().getPluginManager().callEvent(proxyEvent);
+        delegateToPage(new InventoryCloseEvent(getProxyView(closeEvent.getView())));
+        proxyView = null; //don't keep the closed view alive
 
         //update our inventory
         updateView();
@@ -569,7 +891,7 @@ public class PageMenu<P extends Plugin> extends MenuHolder<P> implements MenuHol
         } else {
             //my button row is not clicked - delegate event to myPage
             InventoryView view = clickEvent.getView();
-            InventoryView proxyView = new ProxyView(view);
+            InventoryView proxyView = getProxyView(view);
 
             InventoryType.SlotType slotType = clickEvent.getSlotType();
             InventoryType.SlotType proxySlotType;
@@ -624,14 +946,14 @@ public class PageMenu<P extends Plugin> extends MenuHolder<P> implements MenuHol
                 final Inventory open = target;
 
                 //open the target inventory. It can be either the original inventory to which we were redirected, or in can be a page inside a new PageMenu.
-                getPlugin().getServer().getScheduler().runTask(getPlugin(), () -> {
+                GuiScheduler.of(getPlugin()).runTask(clickEvent.getWhoClicked(), () -> {
                     clickEvent.getWhoClicked().closeInventory();
                     clickEvent.getWhoClicked().openInventory(open);
                 });
 
             } else {
                 //not a redirect button
-                getPlugin().getServer().getPluginManager().callEvent(proxyEvent);
+                delegateToPage(proxyEvent);
                 clickEvent.setCancelled(proxyEvent.isCancelled());
             }
 
@@ -644,7 +966,7 @@ public class PageMenu<P extends Plugin> extends MenuHolder<P> implements MenuHol
         dragEvent.setCancelled(false);
 
         InventoryView view = dragEvent.getView();
-        InventoryView proxyView = new ProxyView(view);
+        InventoryView proxyView = getProxyView(view);
 
         ItemStack newCursor = dragEvent.getCursor();
         ItemStack oldCursor = dragEvent.getOldCursor();
@@ -667,13 +989,13 @@ public class PageMenu<P extends Plugin> extends MenuHolder<P> implements MenuHol
             }).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
 
             InventoryDragEvent proxyEvent = new InventoryDragEvent(proxyView, newCursor, oldCursor, isRightClick, proxyItems);
-            getPlugin().getServer().getPluginManager().callEvent(proxyEvent);
+            delegateToPage(proxyEvent);
 
             dragEvent.setCursor(proxyEvent.getCursor());
             dragEvent.setResult(proxyEvent.getResult());
 
             //run a task later such that we take the changes from event listeners on the page into account.
-            getPlugin().getServer().getScheduler().runTask(getPlugin(), () -> {
+            GuiScheduler.of(getPlugin()).runTask(dragEvent.getWhoClicked(), () -> {
                 for (int i = 0; i < getPageSize(); i++) {
                     Map<Integer, ItemStack> proxyNewItems = proxyEvent.getNewItems();
                     ItemStack oldItem = getPage().getInventory().getItem(i);
@@ -733,7 +1055,7 @@ public class PageMenu<P extends Plugin> extends MenuHolder<P> implements MenuHol
     }
 
     private static int calculateInnerPageSize(GuiInventoryHolder<?> guiInventoryHolder) {
-        int containedSize = guiInventoryHolder.getInventory().getSize();
+        int containedSize = guiInventoryHolder.getInventorySize();
         if (containedSize <= 0) {
             throw new IllegalArgumentException("Page cannot have a size of 0 or below");
         } else if (containedSize <= 45) {
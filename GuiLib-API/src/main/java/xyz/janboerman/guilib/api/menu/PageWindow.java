@@ -0,0 +1,206 @@
+package xyz.janboerman.guilib.api.menu;
+
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
+import xyz.janboerman.guilib.api.GuiInventoryHolder;
+import xyz.janboerman.guilib.api.GuiListener;
+import xyz.janboerman.guilib.api.schedule.GuiScheduler;
+import xyz.janboerman.guilib.api.schedule.GuiTask;
+import xyz.janboerman.guilib.api.schedule.GuiWorkQueue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Creates the menus of the pages created by {@link PageMenu#create(Plugin, int, IntFunction, int)}.
+ * Pages are created by index, so any page can be navigated to directly.
+ * Only the menus of the pages within the window around the page that was navigated to most recently are kept,
+ * menus of pages outside of the window are rebuilt from the source when they are navigated to again.
+ * <p>
+ * Menus don't reference their neighbours, they only reference this window and their own page index.
+ * That way the memory used by the pages is bounded, no matter how far a player pages.
+ * <p>
+ * When the window was created with an asynchronous loader, pages are loaded off the main thread,
+ * and only the creation of their menus runs on the main thread. The creation of the menus is queued on the plugin's
+ * {@link GuiWorkQueue}, so that many pages that finish loading at the same time don't stall a single tick.
+ *
+ * @param <P> the plugin type
+ */
+final class PageWindow<P extends Plugin> {
+
+    private final P plugin;
+    private final String title;
+    private final int pageCount;
+    private final IntFunction<? extends GuiInventoryHolder<?>> pages;
+    private final IntFunction<? extends Supplier<? extends GuiInventoryHolder<?>>> asyncPages;
+    private final int windowRadius;
+    private final ItemStack previousPageButton, nextPageButton, placeholderButton;
+
+    private final Map<Integer, PageMenu<P>> window = new HashMap<>();
+    private final Map<Integer, PendingPage<P>> loading = new HashMap<>();
+
+    PageWindow(P plugin, String title, int pageCount, IntFunction<? extends GuiInventoryHolder<?>> pages, int windowRadius, ItemStack previousPageButton, ItemStack nextPageButton) {
+        this(plugin, title, pageCount, pages, null, windowRadius, previousPageButton, nextPageButton, null);
+    }
+
+    PageWindow(P plugin, String title, int pageCount, IntFunction<? extends Supplier<? extends GuiInventoryHolder<?>>> asyncPages, int windowRadius, ItemStack previousPageButton, ItemStack nextPageButton, ItemStack placeholderButton) {
+        this(plugin, title, pageCount, index -> asyncPages.apply(index).get(), asyncPages, windowRadius, previousPageButton, nextPageButton, placeholderButton);
+    }
+
+    private PageWindow(P plugin, String title, int pageCount, IntFunction<? extends GuiInventoryHolder<?>> pages, IntFunction<? extends Supplier<? extends GuiInventoryHolder<?>>> asyncPages, int windowRadius, ItemStack previousPageButton, ItemStack nextPageButton, ItemStack placeholderButton) {
+        if (pageCount < 1) throw new IllegalArgumentException("Page count must be at least 1: " + pageCount);
+        if (windowRadius < 0) throw new IllegalArgumentException("Negative window radius: " + windowRadius);
+
+        this.plugin = plugin;
+        this.title = title;
+        this.pageCount = pageCount;
+        this.pages = pages;
+        this.asyncPages = asyncPages;
+        this.windowRadius = windowRadius;
+        this.previousPageButton = previousPageButton;
+        this.nextPageButton = nextPageButton;
+        this.placeholderButton = placeholderButton;
+    }
+
+    int getPageCount() {
+        return pageCount;
+    }
+
+    ItemStack getPlaceholderButton() {
+        return placeholderButton == null ? null : placeholderButton.clone();
+    }
+
+    /**
+     * Tests whether the menu of the page can be obtained without loading it asynchronously.
+     * @param pageIndex the page index
+     * @return true if the page is available right away, otherwise false
+     */
+    boolean isReady(int pageIndex) {
+        return asyncPages == null || window.containsKey(pageIndex);
+    }
+
+    /**
+     * Get the menu of the page with the given index, and move the window such that the page is in the center.
+     * Loads of pages that are not adjacent to the page are cancelled.
+     * @param pageIndex the page index
+     * @return the menu of the page
+     */
+    PageMenu<P> navigate(int pageIndex) {
+        window.keySet().removeIf(index -> Math.abs(index - pageIndex) > windowRadius);
+        loading.entrySet().removeIf(entry -> {
+            if (Math.abs(entry.getKey() - pageIndex) > 1) {
+                entry.getValue().task.cancel();
+                return true;
+            } else {
+                return false;
+            }
+        });
+
+        //for asynchronous windows this loads the page on the main thread, but only when the page was not loaded already.
+        return window.computeIfAbsent(pageIndex, this::build);
+    }
+
+    /**
+     * Requests the menu of the page. The callback is called on the main thread (on region-threaded servers: the thread of the requester's viewer) as soon as the page is available,
+     * which is right away if the page is ready, or after the page was loaded asynchronously.
+     * The callback is never called if the load is cancelled or fails.
+     * @param pageIndex the page index
+     * @param requester the menu that shows the page. Loaded pages are committed on the thread of its viewer
+     * @param callback the callback that receives the menu of the page
+     */
+    void request(int pageIndex, GuiInventoryHolder<?> requester, Consumer<? super PageMenu<P>> callback) {
+        request(pageIndex, requester, callback, true);
+    }
+
+    /**
+     * Requests the menu of the page ahead of time. Works like {@link #request(int, Consumer)},
+     * except that the creation of the menu waits for work that players are waiting for.
+     * @param pageIndex the page index
+     * @param requester the menu that shows the page. Loaded pages are committed on the thread of its viewer
+     * @param callback the callback that receives the menu of the page
+     */
+    void prefetch(int pageIndex, GuiInventoryHolder<?> requester, Consumer<? super PageMenu<P>> callback) {
+        request(pageIndex, requester, callback, false);
+    }
+
+    private void request(int pageIndex, GuiInventoryHolder<?> requester, Consumer<? super PageMenu<P>> callback, boolean urgent) {
+        PageMenu<P> pageMenu = asyncPages == null ? window.computeIfAbsent(pageIndex, this::build) : window.get(pageIndex);
+        if (pageMenu != null) {
+            callback.accept(pageMenu);
+        } else {
+            PendingPage<P> pending = loading.computeIfAbsent(pageIndex, this::load);
+            pending.callbacks.add(callback);
+            pending.requester = requester;
+            if (urgent) pending.urgent = true;
+        }
+    }
+
+    private PendingPage<P> load(int pageIndex) {
+        PendingPage<P> pending = new PendingPage<>();
+        pending.task = GuiScheduler.of(plugin).runTaskAsynchronously(() -> {
+            Supplier<? extends GuiInventoryHolder<?>> page;
+            try {
+                page = asyncPages.apply(pageIndex);
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.WARNING, "Could not load page " + pageIndex, e);
+                page = null;
+            }
+
+            final Supplier<? extends GuiInventoryHolder<?>> loaded = page;
+            Runnable commit = () -> commit(pageIndex, pending, loaded);
+            //the callbacks change the inventory of the requester, so the queue runs the commit on the thread of its viewer.
+            GuiWorkQueue queue = GuiWorkQueue.of(plugin);
+            if (pending.urgent) {
+                queue.submitUrgent(pending.requester, commit);
+            } else {
+                queue.submit(pending.requester, commit);
+            }
+        });
+        return pending;
+    }
+
+    private void commit(int pageIndex, PendingPage<P> pending, Supplier<? extends GuiInventoryHolder<?>> page) {
+        if (loading.get(pageIndex) != pending) return; //the load was cancelled
+        loading.remove(pageIndex);
+        if (page == null) return; //the load failed, the next request tries again
+
+        PageMenu<P> pageMenu = window.computeIfAbsent(pageIndex, index -> wrap(index, page.get()));
+        for (Consumer<? super PageMenu<P>> callback : pending.callbacks) {
+            callback.accept(pageMenu);
+        }
+    }
+
+    private PageMenu<P> build(int pageIndex) {
+        return wrap(pageIndex, pages.apply(pageIndex));
+    }
+
+    private PageMenu<P> wrap(int pageIndex, GuiInventoryHolder<?> page) {
+        Supplier<PageMenu<P>> previous = pageIndex > 0 ? () -> navigate(pageIndex - 1) : null;
+        Supplier<PageMenu<P>> next = pageIndex < pageCount - 1 ? () -> navigate(pageIndex + 1) : null;
+
+        ItemStack previousButton = previousPageButton == null ? null : previousPageButton.clone();
+        ItemStack nextButton = nextPageButton == null ? null : nextPageButton.clone();
+
+        //pages are often created before they are navigated to, so their inventories are only created when they are opened,
+        //and released again when the player leaves the page.
+        PageMenu<P> pageMenu = new PageMenu<>(GuiListener.getInstance(), plugin, page, title, previous, next, previousButton, nextButton, true);
+        pageMenu.setReleaseWhenClosed(true);
+        pageMenu.pageWindow = this;
+        pageMenu.pageIndex = pageIndex;
+        return pageMenu;
+    }
+
+    private static final class PendingPage<P extends Plugin> {
+        private final List<Consumer<? super PageMenu<P>>> callbacks = new ArrayList<>(1);
+        private GuiTask task;
+        private volatile GuiInventoryHolder<?> requester;
+        private volatile boolean urgent;
+    }
+
+}
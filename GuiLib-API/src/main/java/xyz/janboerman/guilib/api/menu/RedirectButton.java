@@ -3,6 +3,7 @@ package xyz.janboerman.guilib.api.menu;
 import org.bukkit.entity.HumanEntity;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.inventory.Inventory;
+import xyz.janboerman.guilib.api.schedule.GuiScheduler;
 
 public interface RedirectButton<MH extends MenuHolder<?>> extends MenuButton<MH> {
 
@@ -16,10 +17,10 @@ public interface RedirectButton<MH extends MenuHolder<?>> extends MenuButton<MH>
      */
     @Override
     public default void onClick(MH holder, InventoryClickEvent event) {
-        holder.getPlugin().getServer().getScheduler().runTask(holder.getPlugin(), () -> {
+        HumanEntity player = event.getWhoClicked();
+        GuiScheduler.of(holder.getPlugin()).runTask(player, () -> {
            event.getView().close();
            
-           HumanEntity player = event.getWhoClicked();
            Inventory to = to(holder, event);
            if (to != null) player.openInventory(to);
         });
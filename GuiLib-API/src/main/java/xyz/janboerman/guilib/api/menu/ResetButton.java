@@ -2,6 +2,7 @@ package xyz.janboerman.guilib.api.menu;
 
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.inventory.ItemStack;
+import xyz.janboerman.guilib.api.schedule.GuiWorkQueue;
 
 import java.util.List;
 import java.util.Map;
@@ -18,6 +19,7 @@ public class ResetButton<MH extends MenuHolder<?>> extends ItemButton<MH> {
 
     private Supplier<IntStream> slots;
     private IntFunction<? extends MenuButton<? super MH>> mapper;
+    private GuiWorkQueue workQueue;
 
     /**
      * Creates the reset button without slot providers and a slot-to-button mapping.
@@ -115,6 +117,23 @@ public class ResetButton<MH extends MenuHolder<?>> extends ItemButton<MH> {
         this.mapper = Objects.requireNonNull(mapper, "Slot-to-button mapper cannot be null");
     }
 
+    /**
+     * Set the work queue through which resets run. Resets of large menus can then be spread over multiple ticks together with other gui work.
+     * The reset runs before work for menus that nobody is viewing, since the player that clicked is waiting for it.
+     * @param workQueue the work queue, or null to reset right away
+     */
+    public void setWorkQueue(GuiWorkQueue workQueue) {
+        this.workQueue = workQueue;
+    }
+
+    /**
+     * Get the work queue through which resets run.
+     * @return the work queue, or null if resets run right away
+     */
+    public GuiWorkQueue getWorkQueue() {
+        return workQueue;
+    }
+
     /**
      * Get the slots for which new buttons need to be calculated.
      * @return the stream of slots
@@ -133,14 +152,25 @@ public class ResetButton<MH extends MenuHolder<?>> extends ItemButton<MH> {
     }
 
     /**
-     * Resets the buttons in the menu.
+     * Resets the buttons in the menu. All buttons are reset as a single unit, see {@link MenuHolder#edit(java.util.function.Consumer)}.
+     * If a work queue was set, the reset is submitted to the queue instead.
      *
      * @param menuHolder the menu holder
      * @param event the InventoryClickEvent
+     * @see #setWorkQueue(GuiWorkQueue)
      */
     @Override
     public void onClick(MH menuHolder, InventoryClickEvent event) {
-        getResetSlots().forEach(slot -> menuHolder.setButton(slot, getButtonFor(slot)));
+        GuiWorkQueue workQueue = this.workQueue;
+        if (workQueue == null) {
+            reset(menuHolder);
+        } else {
+            workQueue.submitUrgent(menuHolder, () -> reset(menuHolder));
+        }
+    }
+
+    private void reset(MH menuHolder) {
+        menuHolder.edit(transaction -> getResetSlots().forEach(slot -> transaction.setButton(slot, getButtonFor(slot))));
     }
 
 }
@@ -0,0 +1,116 @@
+package xyz.janboerman.guilib.api.menu;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+/**
+ * Collects the slot writes of a {@link MenuHolder} that renders deferred, and writes them to the inventory at once.
+ * <p>
+ * Only the latest stack per slot is kept. Stacks that are equal to the stack that was rendered last are not written at all,
+ * and when more than half of the slots changed the inventory is updated using a single {@link org.bukkit.inventory.Inventory#setContents(ItemStack[])} call.
+ * The renderer assumes that the menu is the only one that writes to the slots it renders.
+ * <p>
+ * A renderer that does not skip unchanged stacks only remembers the dirty slots, it is used to collect the writes to menus that nobody is viewing.
+ */
+final class SlotRenderer {
+
+    private final MenuHolder<?> menu;
+    private final ItemStack[] pending;
+    private final ItemStack[] rendered;
+    private final long[] dirty;
+    private int dirtyCount;
+
+    SlotRenderer(MenuHolder<?> menu, boolean skipUnchanged) {
+        this.menu = menu;
+
+        int size = menu.getInventorySize();
+        this.pending = new ItemStack[size];
+        this.rendered = skipUnchanged ? new ItemStack[size] : null;
+        this.dirty = new long[(size + 63) >>> 6];
+
+        if (skipUnchanged) {
+            ItemStack[] contents = menu.readSlots();
+            for (int slot = 0; slot < size && slot < contents.length; slot++) {
+                rendered[slot] = copy(contents[slot]);
+            }
+        }
+    }
+
+    /**
+     * Marks the slot as dirty.
+     * @param slot the slot
+     * @param stack the stack that should be rendered in the slot
+     * @return true if this was the first dirty slot since the last flush, otherwise false
+     */
+    boolean set(int slot, ItemStack stack) {
+        pending[slot] = stack;
+
+        int word = slot >>> 6;
+        long bit = 1L << slot;
+        if ((dirty[word] & bit) != 0) return false;
+        dirty[word] |= bit;
+        return dirtyCount++ == 0;
+    }
+
+    /**
+     * Writes the dirty slots to the inventory.
+     * @return the number of slots that were written
+     */
+    int flush() {
+        if (dirtyCount == 0) return 0;
+
+        //first pass: forget the slots that render the same stack as before.
+        int changed = rendered == null ? dirtyCount : 0;
+        for (int word = 0; rendered != null && word < dirty.length; word++) {
+            long bits = dirty[word];
+            while (bits != 0) {
+                long lowest = bits & -bits;
+                bits ^= lowest;
+                int slot = (word << 6) | Long.numberOfTrailingZeros(lowest);
+                if (Objects.equals(pending[slot], rendered[slot])) {
+                    dirty[word] ^= lowest;
+                    pending[slot] = null;
+                } else {
+                    changed += 1;
+                }
+            }
+        }
+
+        //second pass: write the slots that did change.
+        if (changed > pending.length / 2) {
+            ItemStack[] contents = menu.readSlots();
+            forEachDirty(slot -> contents[slot] = pending[slot]);
+            menu.writeSlots(contents);
+        } else if (changed > 0) {
+            forEachDirty(slot -> menu.writeSlot(slot, pending[slot]));
+        }
+
+        forEachDirty(slot -> {
+            if (rendered != null) rendered[slot] = copy(pending[slot]);
+            pending[slot] = null;
+        });
+        Arrays.fill(dirty, 0L);
+        dirtyCount = 0;
+        return changed;
+    }
+
+    private void forEachDirty(IntConsumer action) {
+        for (int word = 0; word < dirty.length; word++) {
+            long bits = dirty[word];
+            while (bits != 0) {
+                long lowest = bits & -bits;
+                bits ^= lowest;
+                action.accept((word << 6) | Long.numberOfTrailingZeros(lowest));
+            }
+        }
+    }
+
+    //the inventory can hand out live views of its stacks, so we keep copies to compare against.
+    private static ItemStack copy(ItemStack stack) {
+        return stack == null ? null : stack.clone();
+    }
+
+}
@@ -0,0 +1,99 @@
+package xyz.janboerman.guilib.api.schedule;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Objects;
+
+/**
+ * A {@link GuiScheduler} that runs all tasks on the main thread, using the {@link org.bukkit.scheduler.BukkitScheduler}.
+ * Tasks for entities are run on the main thread too, but only if the entity is still valid when the task runs.
+ */
+public final class BukkitGuiScheduler implements GuiScheduler {
+
+    private final Plugin plugin;
+
+    /**
+     * Creates the scheduler.
+     * @param plugin the plugin that owns the tasks
+     */
+    public BukkitGuiScheduler(Plugin plugin) {
+        this.plugin = Objects.requireNonNull(plugin, "Plugin cannot be null");
+    }
+
+    @Override
+    public GuiTask runTask(Runnable task) {
+        return wrap(plugin.getServer().getScheduler().runTask(plugin, task));
+    }
+
+    @Override
+    public GuiTask runTaskLater(Runnable task, long delay) {
+        return wrap(plugin.getServer().getScheduler().runTaskLater(plugin, task, delay));
+    }
+
+    @Override
+    public GuiTask runTaskTimer(Runnable task, long delay, long period) {
+        return wrap(plugin.getServer().getScheduler().runTaskTimer(plugin, task, delay, period));
+    }
+
+    @Override
+    public GuiTask runTask(Entity entity, Runnable task, Runnable retired) {
+        return runTask(forEntity(entity, task, retired));
+    }
+
+    @Override
+    public GuiTask runTaskLater(Entity entity, Runnable task, long delay) {
+        return runTaskLater(forEntity(entity, task, null), delay);
+    }
+
+    @Override
+    public GuiTask runTaskTimer(Entity entity, Runnable task, long delay, long period) {
+        BukkitTask[] self = new BukkitTask[1];
+        BukkitTask bukkitTask = plugin.getServer().getScheduler().runTaskTimer(plugin, () -> {
+            if (entity.isValid()) {
+                task.run();
+            } else {
+                self[0].cancel();
+            }
+        }, delay, period);
+        self[0] = bukkitTask;
+        return wrap(bukkitTask);
+    }
+
+    @Override
+    public GuiTask runTaskAsynchronously(Runnable task) {
+        return wrap(plugin.getServer().getScheduler().runTaskAsynchronously(plugin, task));
+    }
+
+    @Override
+    public boolean isOwnedByCurrentThread(Entity entity) {
+        return plugin.getServer().isPrimaryThread();
+    }
+
+    private static Runnable forEntity(Entity entity, Runnable task, Runnable retired) {
+        Objects.requireNonNull(entity, "Entity cannot be null");
+        return () -> {
+            if (entity.isValid()) {
+                task.run();
+            } else if (retired != null) {
+                retired.run();
+            }
+        };
+    }
+
+    private static GuiTask wrap(BukkitTask bukkitTask) {
+        return new GuiTask() {
+            @Override
+            public void cancel() {
+                bukkitTask.cancel();
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return bukkitTask.isCancelled();
+            }
+        };
+    }
+
+}
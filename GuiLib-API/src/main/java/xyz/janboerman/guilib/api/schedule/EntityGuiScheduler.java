@@ -0,0 +1,63 @@
+package xyz.janboerman.guilib.api.schedule;
+
+import org.bukkit.entity.Entity;
+
+import java.util.Objects;
+
+//schedules the tasks that are not scheduled for an entity for a fixed entity, see GuiScheduler#forEntity(Entity).
+final class EntityGuiScheduler implements GuiScheduler {
+
+    private final GuiScheduler scheduler;
+    private final Entity entity;
+
+    EntityGuiScheduler(GuiScheduler scheduler, Entity entity) {
+        this.scheduler = scheduler;
+        this.entity = Objects.requireNonNull(entity, "Entity cannot be null");
+    }
+
+    @Override
+    public GuiTask runTask(Runnable task) {
+        return scheduler.runTask(entity, task);
+    }
+
+    @Override
+    public GuiTask runTaskLater(Runnable task, long delay) {
+        return scheduler.runTaskLater(entity, task, delay);
+    }
+
+    @Override
+    public GuiTask runTaskTimer(Runnable task, long delay, long period) {
+        return scheduler.runTaskTimer(entity, task, delay, period);
+    }
+
+    @Override
+    public GuiTask runTask(Entity entity, Runnable task, Runnable retired) {
+        return scheduler.runTask(entity, task, retired);
+    }
+
+    @Override
+    public GuiTask runTaskLater(Entity entity, Runnable task, long delay) {
+        return scheduler.runTaskLater(entity, task, delay);
+    }
+
+    @Override
+    public GuiTask runTaskTimer(Entity entity, Runnable task, long delay, long period) {
+        return scheduler.runTaskTimer(entity, task, delay, period);
+    }
+
+    @Override
+    public GuiTask runTaskAsynchronously(Runnable task) {
+        return scheduler.runTaskAsynchronously(task);
+    }
+
+    @Override
+    public boolean isOwnedByCurrentThread(Entity entity) {
+        return scheduler.isOwnedByCurrentThread(entity);
+    }
+
+    @Override
+    public GuiScheduler forEntity(Entity entity) {
+        return scheduler.forEntity(entity);
+    }
+
+}
@@ -0,0 +1,173 @@
+package xyz.janboerman.guilib.api.schedule;
+
+import org.bukkit.Server;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * A {@link GuiScheduler} for region-threaded servers such as Folia.
+ * Tasks for entities run on the entity's scheduler, so they run on the thread of the region that the entity is in.
+ * Other tasks run on the global region scheduler, and asynchronous tasks run on the async scheduler.
+ * <p>
+ * The schedulers are looked up reflectively, so that GuiLib does not need to be compiled against the Folia api.
+ */
+public final class FoliaGuiScheduler implements GuiScheduler {
+
+    private static final String REGIONIZED_SERVER = "io.papermc.paper.threadedregions.RegionizedServer";
+    private static final String SCHEDULER_PACKAGE = "io.papermc.paper.threadedregions.scheduler.";
+
+    private final Plugin plugin;
+
+    private final Object globalScheduler;
+    private final Method globalRun, globalRunDelayed, globalRunAtFixedRate;
+
+    private final Object asyncScheduler;
+    private final Method asyncRunNow;
+
+    private final Method getEntityScheduler;
+    private final Method entityRun, entityRunDelayed, entityRunAtFixedRate;
+
+    private final Method taskCancel, taskIsCancelled;
+    private final Method isOwnedByCurrentRegion;
+
+    /**
+     * Tests whether the server is region-threaded.
+     * @return true if the server is region-threaded, otherwise false
+     */
+    public static boolean isSupported() {
+        try {
+            Class.forName(REGIONIZED_SERVER);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates the scheduler.
+     * @param plugin the plugin that owns the tasks
+     * @throws UnsupportedOperationException if the server is not region-threaded
+     */
+    public FoliaGuiScheduler(Plugin plugin) throws UnsupportedOperationException {
+        this.plugin = Objects.requireNonNull(plugin, "Plugin cannot be null");
+
+        try {
+            Server server = plugin.getServer();
+
+            Class<?> globalType = Class.forName(SCHEDULER_PACKAGE + "GlobalRegionScheduler");
+            this.globalScheduler = Server.class.getMethod("getGlobalRegionScheduler").invoke(server);
+            this.globalRun = globalType.getMethod("run", Plugin.class, Consumer.class);
+            this.globalRunDelayed = globalType.getMethod("runDelayed", Plugin.class, Consumer.class, long.class);
+            this.globalRunAtFixedRate = globalType.getMethod("runAtFixedRate", Plugin.class, Consumer.class, long.class, long.class);
+
+            Class<?> asyncType = Class.forName(SCHEDULER_PACKAGE + "AsyncScheduler");
+            this.asyncScheduler = Server.class.getMethod("getAsyncScheduler").invoke(server);
+            this.asyncRunNow = asyncType.getMethod("runNow", Plugin.class, Consumer.class);
+
+            Class<?> entityType = Class.forName(SCHEDULER_PACKAGE + "EntityScheduler");
+            this.getEntityScheduler = Entity.class.getMethod("getScheduler");
+            this.entityRun = entityType.getMethod("run", Plugin.class, Consumer.class, Runnable.class);
+            this.entityRunDelayed = entityType.getMethod("runDelayed", Plugin.class, Consumer.class, Runnable.class, long.class);
+            this.entityRunAtFixedRate = entityType.getMethod("runAtFixedRate", Plugin.class, Consumer.class, Runnable.class, long.class, long.class);
+
+            Class<?> taskType = Class.forName(SCHEDULER_PACKAGE + "ScheduledTask");
+            this.taskCancel = taskType.getMethod("cancel");
+            this.taskIsCancelled = taskType.getMethod("isCancelled");
+
+            this.isOwnedByCurrentRegion = Server.class.getMethod("isOwnedByCurrentRegion", Entity.class);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("This server is not region-threaded", e);
+        }
+    }
+
+    @Override
+    public GuiTask runTask(Runnable task) {
+        return schedule(globalRun, globalScheduler, plugin, consumer(task));
+    }
+
+    @Override
+    public GuiTask runTaskLater(Runnable task, long delay) {
+        //region schedulers don't accept delays smaller than one tick.
+        if (delay < 1L) return runTask(task);
+        return schedule(globalRunDelayed, globalScheduler, plugin, consumer(task), delay);
+    }
+
+    @Override
+    public GuiTask runTaskTimer(Runnable task, long delay, long period) {
+        return schedule(globalRunAtFixedRate, globalScheduler, plugin, consumer(task), Math.max(1L, delay), Math.max(1L, period));
+    }
+
+    @Override
+    public GuiTask runTask(Entity entity, Runnable task, Runnable retired) {
+        GuiTask guiTask = schedule(entityRun, entityScheduler(entity), plugin, consumer(task), retired);
+        //the entity scheduler doesn't call the retired callback when the entity was removed already.
+        if (guiTask.isCancelled() && retired != null) retired.run();
+        return guiTask;
+    }
+
+    @Override
+    public GuiTask runTaskLater(Entity entity, Runnable task, long delay) {
+        if (delay < 1L) return runTask(entity, task);
+        return schedule(entityRunDelayed, entityScheduler(entity), plugin, consumer(task), null, delay);
+    }
+
+    @Override
+    public GuiTask runTaskTimer(Entity entity, Runnable task, long delay, long period) {
+        return schedule(entityRunAtFixedRate, entityScheduler(entity), plugin, consumer(task), null, Math.max(1L, delay), Math.max(1L, period));
+    }
+
+    @Override
+    public GuiTask runTaskAsynchronously(Runnable task) {
+        return schedule(asyncRunNow, asyncScheduler, plugin, consumer(task));
+    }
+
+    @Override
+    public boolean isOwnedByCurrentThread(Entity entity) {
+        return (Boolean) invoke(isOwnedByCurrentRegion, plugin.getServer(), entity);
+    }
+
+    private Object entityScheduler(Entity entity) {
+        Objects.requireNonNull(entity, "Entity cannot be null");
+        return invoke(getEntityScheduler, entity);
+    }
+
+    private static Consumer<Object> consumer(Runnable task) {
+        Objects.requireNonNull(task, "Task cannot be null");
+        return scheduledTask -> task.run();
+    }
+
+    private GuiTask schedule(Method method, Object scheduler, Object... arguments) {
+        //entity schedulers return null when the entity was removed already.
+        Object scheduledTask = invoke(method, scheduler, arguments);
+        return new GuiTask() {
+            @Override
+            public void cancel() {
+                if (scheduledTask != null) invoke(taskCancel, scheduledTask);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return scheduledTask == null || (Boolean) invoke(taskIsCancelled, scheduledTask);
+            }
+        };
+    }
+
+    private static Object invoke(Method method, Object target, Object... arguments) {
+        try {
+            return method.invoke(target, arguments);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not access " + method, e);
+        }
+    }
+
+}
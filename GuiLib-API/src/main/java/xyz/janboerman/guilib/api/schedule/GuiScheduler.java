@@ -0,0 +1,130 @@
+package xyz.janboerman.guilib.api.schedule;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Runs the tasks of guis. GuiLib schedules all its tasks through a GuiScheduler, so that guis work both on servers
+ * that have a single main thread and on region-threaded servers such as Folia.
+ * <p>
+ * Tasks that are scheduled for an entity run on the thread that owns the entity, which is the main thread on regular servers.
+ * Tasks for the players that are viewing a gui should always be scheduled for the player.
+ * The tasks of an entity don't run when the entity is removed before the task runs, for example when a player logs out.
+ * <p>
+ * Tasks that are not scheduled for an entity run on the main thread, or on the global region thread of region-threaded servers.
+ * Delays and periods are measured in ticks.
+ *
+ * @see #of(Plugin)
+ * @see BukkitGuiScheduler
+ * @see FoliaGuiScheduler
+ * @see ManualGuiScheduler
+ */
+public interface GuiScheduler {
+
+    /**
+     * Get the scheduler used for the guis of a plugin.
+     * Unless a scheduler was set using {@link #set(Plugin, GuiScheduler)}, this is a {@link FoliaGuiScheduler} on region-threaded servers
+     * and a {@link BukkitGuiScheduler} on all other servers.
+     * @param plugin the plugin
+     * @return the scheduler
+     */
+    public static GuiScheduler of(Plugin plugin) {
+        return GuiSchedulers.get(plugin);
+    }
+
+    /**
+     * Set the scheduler used for the guis of a plugin. This can be used to run guis on a {@link ManualGuiScheduler}.
+     * @param plugin the plugin
+     * @param scheduler the scheduler, or null to use the default scheduler again
+     */
+    public static void set(Plugin plugin, GuiScheduler scheduler) {
+        GuiSchedulers.set(plugin, scheduler);
+    }
+
+    /**
+     * Runs a task in the next tick.
+     * @param task the task
+     * @return the scheduled task
+     */
+    public GuiTask runTask(Runnable task);
+
+    /**
+     * Runs a task after a delay.
+     * @param task the task
+     * @param delay the delay
+     * @return the scheduled task
+     */
+    public GuiTask runTaskLater(Runnable task, long delay);
+
+    /**
+     * Runs a task repeatedly.
+     * @param task the task
+     * @param delay the delay before the first run
+     * @param period the delay between consecutive runs
+     * @return the scheduled task
+     */
+    public GuiTask runTaskTimer(Runnable task, long delay, long period);
+
+    /**
+     * Runs a task for an entity in the next tick.
+     * @param entity the entity
+     * @param task the task
+     * @return the scheduled task
+     */
+    public default GuiTask runTask(Entity entity, Runnable task) {
+        return runTask(entity, task, null);
+    }
+
+    /**
+     * Runs a task for an entity in the next tick. If the entity is removed before the task runs, the retired callback runs instead.
+     * The retired callback may run on any thread.
+     * @param entity the entity
+     * @param task the task
+     * @param retired the callback for when the entity is removed, or null
+     * @return the scheduled task
+     */
+    public GuiTask runTask(Entity entity, Runnable task, Runnable retired);
+
+    /**
+     * Runs a task for an entity after a delay.
+     * @param entity the entity
+     * @param task the task
+     * @param delay the delay
+     * @return the scheduled task
+     */
+    public GuiTask runTaskLater(Entity entity, Runnable task, long delay);
+
+    /**
+     * Runs a task for an entity repeatedly. The task stops running when the entity is removed.
+     * @param entity the entity
+     * @param task the task
+     * @param delay the delay before the first run
+     * @param period the delay between consecutive runs
+     * @return the scheduled task
+     */
+    public GuiTask runTaskTimer(Entity entity, Runnable task, long delay, long period);
+
+    /**
+     * Runs a task off the main thread.
+     * @param task the task
+     * @return the scheduled task
+     */
+    public GuiTask runTaskAsynchronously(Runnable task);
+
+    /**
+     * Tests whether the current thread is allowed to access the entity.
+     * @param entity the entity
+     * @return true if the entity can be accessed from the current thread, otherwise false
+     */
+    public boolean isOwnedByCurrentThread(Entity entity);
+
+    /**
+     * Get a view of this scheduler that schedules all its tasks for an entity, except for asynchronous tasks.
+     * @param entity the entity
+     * @return the scheduler for the entity
+     */
+    public default GuiScheduler forEntity(Entity entity) {
+        return new EntityGuiScheduler(this, entity);
+    }
+
+}
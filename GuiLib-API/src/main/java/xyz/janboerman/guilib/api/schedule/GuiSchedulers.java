@@ -0,0 +1,37 @@
+package xyz.janboerman.guilib.api.schedule;
+
+import org.bukkit.plugin.Plugin;
+import xyz.janboerman.guilib.util.PluginDisableHooks;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+//holds the schedulers of plugins, see GuiScheduler#of(Plugin).
+final class GuiSchedulers {
+
+    private static final Map<Plugin, GuiScheduler> SCHEDULERS = new ConcurrentHashMap<>();
+
+    static {
+        //the scheduler of a disabled plugin can't run tasks anymore, and it would keep the plugin instance alive across reloads.
+        PluginDisableHooks.add(SCHEDULERS::remove);
+    }
+
+    private GuiSchedulers() {
+    }
+
+    static GuiScheduler get(Plugin plugin) {
+        Objects.requireNonNull(plugin, "Plugin cannot be null");
+        return SCHEDULERS.computeIfAbsent(plugin, p -> FoliaGuiScheduler.isSupported() ? new FoliaGuiScheduler(p) : new BukkitGuiScheduler(p));
+    }
+
+    static void set(Plugin plugin, GuiScheduler scheduler) {
+        Objects.requireNonNull(plugin, "Plugin cannot be null");
+        if (scheduler == null) {
+            SCHEDULERS.remove(plugin);
+        } else {
+            SCHEDULERS.put(plugin, scheduler);
+        }
+    }
+
+}
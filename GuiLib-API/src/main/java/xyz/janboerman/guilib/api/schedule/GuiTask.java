@@ -0,0 +1,19 @@
+package xyz.janboerman.guilib.api.schedule;
+
+/**
+ * A task that was scheduled by a {@link GuiScheduler}.
+ */
+public interface GuiTask {
+
+    /**
+     * Cancels this task. If the task is running, it finishes its current run, but it won't run again.
+     */
+    public void cancel();
+
+    /**
+     * Tests whether this task was cancelled. Tasks that could not be scheduled at all are cancelled too.
+     * @return true if the task was cancelled, otherwise false
+     */
+    public boolean isCancelled();
+
+}
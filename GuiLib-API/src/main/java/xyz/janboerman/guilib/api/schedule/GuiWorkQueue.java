@@ -0,0 +1,354 @@
+package xyz.janboerman.guilib.api.schedule;
+
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.plugin.Plugin;
+import xyz.janboerman.guilib.api.GuiInventoryHolder;
+import xyz.janboerman.guilib.api.util.IntBiConsumer;
+import xyz.janboerman.guilib.util.PluginDisableHooks;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * A queue for gui work that runs on the main thread, but that only spends a limited amount of time per tick.
+ * Work that does not fit in the budget of the current tick rolls over to the next tick.
+ * <p>
+ * Work for guis that are being viewed runs before other work, so players that are waiting for a menu are served first.
+ * At least one piece of work runs every tick, no matter how long it takes, so the queue always makes progress.
+ * <p>
+ * Heavy menu builds can be submitted using {@link xyz.janboerman.guilib.api.mask.Mask#applyMenu(xyz.janboerman.guilib.api.mask.Mask, xyz.janboerman.guilib.api.mask.Pattern, xyz.janboerman.guilib.api.menu.MenuHolder, GuiWorkQueue)},
+ * resets using {@link xyz.janboerman.guilib.api.menu.ResetButton#setWorkQueue(GuiWorkQueue)},
+ * and the frames of animations using {@link #container(GuiInventoryHolder, IntBiConsumer)}. Any other work can be submitted as follows:
+ * <pre><code>
+ * GuiWorkQueue.of(plugin).submit(menu, () -&gt; buildMenu(menu));
+ * </code></pre>
+ * Work can be submitted from any thread. The queue of a plugin only runs a task while it has work.
+ * On region-threaded servers the queue runs on the global region thread. Work for a gui that is being viewed is handed
+ * to the thread of one of its viewers (see {@link GuiInventoryHolder#getViewer()}), because that thread owns the gui's inventory.
+ * Other work that accesses players should schedule that part for the player using the plugin's {@link GuiScheduler}.
+ */
+public final class GuiWorkQueue {
+
+    /** The default budget per tick: 2 milliseconds, which is 4% of a tick */
+    public static final long DEFAULT_BUDGET_MICROS = 2_000L;
+
+    private static final Map<Plugin, GuiWorkQueue> QUEUES = new ConcurrentHashMap<>();
+
+    static {
+        PluginDisableHooks.add(GuiWorkQueue::discard);
+    }
+
+    private final Plugin plugin;
+    private volatile long budgetNanos = TimeUnit.MICROSECONDS.toNanos(DEFAULT_BUDGET_MICROS);
+
+    private final Queue<Work> incoming = new ConcurrentLinkedQueue<>();
+    private final ArrayDeque<Work> urgent = new ArrayDeque<>();
+    private final ArrayDeque<Work> background = new ArrayDeque<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    //work is submitted from any thread, so the task can fire before runTaskTimer returns. tick takes the lock before it uses the task.
+    private final Object taskLock = new Object();
+    private GuiTask task;
+    private volatile boolean discarded;
+
+    //only written by the thread that runs the queue, but can be read from any thread.
+    private volatile long workExecuted, ticksOverBudget;
+
+    private GuiWorkQueue(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Get the work queue of a plugin.
+     * @param plugin the plugin
+     * @return the work queue
+     */
+    public static GuiWorkQueue of(Plugin plugin) {
+        Objects.requireNonNull(plugin, "Plugin cannot be null");
+        return QUEUES.computeIfAbsent(plugin, GuiWorkQueue::new);
+    }
+
+    //called when the plugin is disabled. Its work would never run, so it is dropped together with the queue.
+    private static void discard(Plugin plugin) {
+        GuiWorkQueue queue = QUEUES.remove(plugin);
+        if (queue == null) return;
+
+        queue.discarded = true;
+        queue.incoming.clear();
+        synchronized (queue.taskLock) {
+            if (queue.task != null) queue.task.cancel();
+        }
+    }
+
+    /**
+     * Set the maximum amount of time that is spent on work per tick.
+     * @param budgetMicros the budget in microseconds
+     * @throws IllegalArgumentException if the budget is negative
+     */
+    public void setBudgetMicros(long budgetMicros) throws IllegalArgumentException {
+        if (budgetMicros < 0L) throw new IllegalArgumentException("Negative budget: " + budgetMicros);
+        this.budgetNanos = TimeUnit.MICROSECONDS.toNanos(budgetMicros);
+    }
+
+    /**
+     * Get the maximum amount of time that is spent on work per tick.
+     * @return the budget in microseconds
+     */
+    public long getBudgetMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(budgetNanos);
+    }
+
+    /**
+     * Queue work that no player is waiting for.
+     * @param work the work
+     */
+    public void submit(Runnable work) {
+        enqueue(new Work(null, false, Objects.requireNonNull(work, "Work cannot be null")));
+    }
+
+    /**
+     * Queue work for a gui. The work gets priority over other work as soon as the gui is being viewed.
+     * Work for guis that are garbage collected before the work runs is dropped.
+     * @param gui the gui
+     * @param work the work
+     */
+    public void submit(GuiInventoryHolder<?> gui, Runnable work) {
+        Objects.requireNonNull(gui, "Gui cannot be null");
+        enqueue(new Work(new WeakReference<>(gui), false, Objects.requireNonNull(work, "Work cannot be null")));
+    }
+
+    /**
+     * Queue work that a player is waiting for. This work runs before all work that no player is waiting for.
+     * @param work the work
+     */
+    public void submitUrgent(Runnable work) {
+        enqueue(new Work(null, true, Objects.requireNonNull(work, "Work cannot be null")));
+    }
+
+    /**
+     * Queue work for a gui that a player is waiting for. This work runs before all work that no player is waiting for.
+     * Work for guis that are garbage collected before the work runs is dropped.
+     * @param gui the gui
+     * @param work the work
+     */
+    public void submitUrgent(GuiInventoryHolder<?> gui, Runnable work) {
+        Objects.requireNonNull(gui, "Gui cannot be null");
+        enqueue(new Work(new WeakReference<>(gui), true, Objects.requireNonNull(work, "Work cannot be null")));
+    }
+
+    /**
+     * Get a container that writes to another container through this queue.
+     * Writes are collected, and written to the container by a single piece of work for the gui.
+     * When a slot is written multiple times before the work runs, only the last item is written.
+     * This can be used to let an {@link xyz.janboerman.guilib.api.animate.AnimationRunner} share the budget with other work:
+     * {@code new AnimationRunner<>(plugin, animation, queue.container(menu, menu::setIcon))}.
+     * <p>
+     * The container is thread-safe, but the writes happen on the thread that runs this queue.
+     *
+     * @param gui the gui that the container belongs to
+     * @param container the container
+     * @param <Item> the type of items in the container
+     * @return the queued container
+     */
+    public <Item> IntBiConsumer<Item> container(GuiInventoryHolder<?> gui, IntBiConsumer<Item> container) {
+        Objects.requireNonNull(gui, "Gui cannot be null");
+        Objects.requireNonNull(container, "Container cannot be null");
+        return new QueuedContainer<>(this, gui, container);
+    }
+
+    private void enqueue(Work work) {
+        incoming.add(work);
+        if (running.compareAndSet(false, true)) {
+            synchronized (taskLock) {
+                if (plugin.isEnabled() && !discarded) {
+                    task = GuiScheduler.of(plugin).runTaskTimer(this::tick, 0L, 1L);
+                } else {
+                    running.set(false);
+                    incoming.clear(); //the plugin can't run tasks anymore, the work would never run.
+                }
+            }
+        }
+    }
+
+    private void tick() {
+        if (discarded) {
+            synchronized (taskLock) {
+                if (task != null) task.cancel();
+            }
+            urgent.clear();
+            background.clear();
+            return;
+        }
+
+        Work work;
+        while ((work = incoming.poll()) != null) {
+            (work.isUrgent() ? urgent : background).add(work);
+        }
+        //guis that were opened since their work was queued are now waiting for it.
+        for (int i = background.size(); i > 0; i--) {
+            work = background.poll();
+            (work.isUrgent() ? urgent : background).add(work);
+        }
+
+        long deadline = System.nanoTime() + budgetNanos;
+        boolean first = true;
+        while ((work = urgent.isEmpty() ? background.poll() : urgent.poll()) != null) {
+            if (!first && System.nanoTime() - deadline > 0L) {
+                //out of time, put it back in front and continue next tick.
+                (work.isUrgent() ? urgent : background).addFirst(work);
+                ticksOverBudget += 1;
+                return;
+            }
+            first = false;
+
+            if (!work.isDropped()) {
+                HumanEntity viewer = work.getViewer();
+                GuiScheduler scheduler;
+                if (viewer != null && !(scheduler = GuiScheduler.of(plugin)).isOwnedByCurrentThread(viewer)) {
+                    //region-threaded servers: the inventory of the gui belongs to the thread of its viewer.
+                    //if the viewer leaves before the work runs, the work is queued again.
+                    Work handedOff = work;
+                    scheduler.runTask(viewer, () -> run(handedOff), () -> enqueue(handedOff));
+                } else {
+                    run(work);
+                }
+                workExecuted += 1;
+            }
+        }
+
+        //all work is done. Stop the task, unless work was submitted in the meantime.
+        synchronized (taskLock) {
+            task.cancel();
+            task = null;
+            running.set(false);
+            if (!incoming.isEmpty() && running.compareAndSet(false, true)) {
+                task = GuiScheduler.of(plugin).runTaskTimer(this::tick, 1L, 1L);
+            }
+        }
+    }
+
+    private void run(Work work) {
+        try {
+            work.runnable.run();
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.SEVERE, "Gui work threw an exception", e);
+        }
+    }
+
+    /**
+     * Get the number of pieces of work that are waiting to be run.
+     * @return the number of pending pieces of work
+     */
+    public int getPendingCount() {
+        return incoming.size() + urgent.size() + background.size();
+    }
+
+    /**
+     * Get the number of pieces of work that have been run by this queue.
+     * Work that was handed to the thread of a viewer is counted when it is handed off.
+     * @return the number of executed pieces of work
+     */
+    public long getWorkExecuted() {
+        return workExecuted;
+    }
+
+    /**
+     * Get the number of ticks in which this queue ran out of budget, and rolled work over to the next tick.
+     * @return the number of ticks that were over budget
+     */
+    public long getTicksOverBudget() {
+        return ticksOverBudget;
+    }
+
+    private static final class QueuedContainer<Item> implements IntBiConsumer<Item> {
+        private final GuiWorkQueue queue;
+        private final GuiInventoryHolder<?> gui;
+        private final IntBiConsumer<Item> container;
+
+        //the pending items are indexed by slot, the pending slots are kept in the order in which they were first written.
+        private Object[] items = new Object[54];
+        private boolean[] pending = new boolean[54];
+        private int[] pendingSlots = new int[54];
+        private int pendingCount;
+
+        private QueuedContainer(GuiWorkQueue queue, GuiInventoryHolder<?> gui, IntBiConsumer<Item> container) {
+            this.queue = queue;
+            this.gui = gui;
+            this.container = container;
+        }
+
+        @Override
+        public void accept(int slot, Item item) {
+            if (slot < 0) throw new IndexOutOfBoundsException("Negative slot: " + slot);
+
+            boolean submit;
+            synchronized (this) {
+                if (slot >= items.length) {
+                    int length = Math.max(slot + 1, items.length * 2);
+                    items = Arrays.copyOf(items, length);
+                    pending = Arrays.copyOf(pending, length);
+                    pendingSlots = Arrays.copyOf(pendingSlots, length);
+                }
+
+                items[slot] = item;
+                submit = pendingCount == 0;
+                if (!pending[slot]) {
+                    pending[slot] = true;
+                    pendingSlots[pendingCount++] = slot;
+                }
+            }
+
+            if (submit) queue.submit(gui, this::flush);
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized void flush() {
+            for (int i = 0; i < pendingCount; i++) {
+                int slot = pendingSlots[i];
+                Item item = (Item) items[slot];
+                items[slot] = null;
+                pending[slot] = false;
+                container.accept(slot, item);
+            }
+            pendingCount = 0;
+        }
+    }
+
+    private static final class Work {
+        private final WeakReference<GuiInventoryHolder<?>> gui;
+        private final boolean urgent;
+        private final Runnable runnable;
+
+        private Work(WeakReference<GuiInventoryHolder<?>> gui, boolean urgent, Runnable runnable) {
+            this.gui = gui;
+            this.urgent = urgent;
+            this.runnable = runnable;
+        }
+
+        private boolean isUrgent() {
+            if (urgent) return true;
+            if (gui == null) return false;
+            GuiInventoryHolder<?> holder = gui.get();
+            return holder != null && holder.getViewerCount() > 0;
+        }
+
+        private boolean isDropped() {
+            return gui != null && gui.get() == null;
+        }
+
+        private HumanEntity getViewer() {
+            if (gui == null) return null;
+            GuiInventoryHolder<?> holder = gui.get();
+            return holder == null ? null : holder.getViewer();
+        }
+    }
+
+}
@@ -0,0 +1,226 @@
+package xyz.janboerman.guilib.api.schedule;
+
+import org.bukkit.entity.Entity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * A deterministic {@link GuiScheduler} that only runs tasks when it is told to. Time only passes when {@link #tick()} is called.
+ * <p>
+ * This scheduler mimics a region-threaded server: tasks for an entity are only considered to run on the entity's thread,
+ * and they are dropped once the entity is {@link #retire(Entity) retired}. This makes it possible to test guis on a
+ * region-threaded model without a server. Install it using {@link GuiScheduler#set(org.bukkit.plugin.Plugin, GuiScheduler)}.
+ * <p>
+ * Tasks run in the order of the tick they are due in, and tasks that are due in the same tick run in the order they were scheduled in.
+ * Asynchronous tasks run during the next tick too, but they don't own any entity.
+ */
+public final class ManualGuiScheduler implements GuiScheduler {
+
+    private final PriorityQueue<ManualTask> queue = new PriorityQueue<>();
+    private final Set<Entity> retired = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long currentTick;
+    private long sequence;
+
+    private ManualTask running;
+
+    /**
+     * Creates the scheduler. Its clock starts at tick 0.
+     */
+    public ManualGuiScheduler() {
+    }
+
+    @Override
+    public GuiTask runTask(Runnable task) {
+        return schedule(null, false, task, null, 0L, 0L);
+    }
+
+    @Override
+    public GuiTask runTaskLater(Runnable task, long delay) {
+        return schedule(null, false, task, null, delay, 0L);
+    }
+
+    @Override
+    public GuiTask runTaskTimer(Runnable task, long delay, long period) {
+        return schedule(null, false, task, null, delay, Math.max(1L, period));
+    }
+
+    @Override
+    public GuiTask runTask(Entity entity, Runnable task, Runnable retired) {
+        return schedule(Objects.requireNonNull(entity, "Entity cannot be null"), false, task, retired, 0L, 0L);
+    }
+
+    @Override
+    public GuiTask runTaskLater(Entity entity, Runnable task, long delay) {
+        return schedule(Objects.requireNonNull(entity, "Entity cannot be null"), false, task, null, delay, 0L);
+    }
+
+    @Override
+    public GuiTask runTaskTimer(Entity entity, Runnable task, long delay, long period) {
+        return schedule(Objects.requireNonNull(entity, "Entity cannot be null"), false, task, null, delay, Math.max(1L, period));
+    }
+
+    @Override
+    public GuiTask runTaskAsynchronously(Runnable task) {
+        return schedule(null, true, task, null, 0L, 0L);
+    }
+
+    /**
+     * Tests whether the task that is currently being run by this scheduler was scheduled for the entity.
+     * @param entity the entity
+     * @return true if the current task runs for the entity, otherwise false
+     */
+    @Override
+    public synchronized boolean isOwnedByCurrentThread(Entity entity) {
+        return running != null && running.entity == entity;
+    }
+
+    private GuiTask schedule(Entity entity, boolean async, Runnable task, Runnable retiredCallback, long delay, long period) {
+        Objects.requireNonNull(task, "Task cannot be null");
+        ManualTask manualTask = new ManualTask(entity, async, task, retiredCallback, period);
+        synchronized (this) {
+            if (entity == null || !retired.contains(entity)) {
+                //just like the BukkitScheduler, tasks without a delay run in the next tick.
+                manualTask.due = currentTick + Math.max(1L, delay);
+                manualTask.sequence = sequence++;
+                queue.add(manualTask);
+                return manualTask;
+            }
+            manualTask.cancelled = true;
+        }
+        if (retiredCallback != null) retiredCallback.run();
+        return manualTask;
+    }
+
+    /**
+     * Advances the clock by one tick, and runs all tasks that are due.
+     * Tasks that are scheduled while this tick runs, run in a later tick.
+     * @return the number of tasks that were run
+     */
+    public int tick() {
+        List<ManualTask> due = new ArrayList<>();
+        synchronized (this) {
+            currentTick += 1;
+            while (!queue.isEmpty() && queue.peek().due <= currentTick) {
+                due.add(queue.poll());
+            }
+        }
+
+        int ran = 0;
+        for (ManualTask task : due) {
+            boolean entityRetired;
+            synchronized (this) {
+                if (task.cancelled) continue;
+                entityRetired = task.entity != null && retired.contains(task.entity);
+                if (entityRetired) {
+                    task.cancelled = true;
+                } else {
+                    running = task.async ? null : task;
+                }
+            }
+            if (entityRetired) {
+                if (task.retired != null) task.retired.run();
+                continue;
+            }
+
+            try {
+                task.runnable.run();
+                ran += 1;
+            } finally {
+                synchronized (this) {
+                    running = null;
+                    if (task.period > 0L && !task.cancelled) {
+                        task.due = currentTick + task.period;
+                        task.sequence = sequence++;
+                        queue.add(task);
+                    }
+                }
+            }
+        }
+        return ran;
+    }
+
+    /**
+     * Advances the clock by a number of ticks, and runs the tasks that are due in those ticks.
+     * @param ticks the number of ticks
+     * @return the number of tasks that were run
+     * @throws IllegalArgumentException if the number of ticks is negative
+     */
+    public int tick(int ticks) throws IllegalArgumentException {
+        if (ticks < 0) throw new IllegalArgumentException("Negative ticks: " + ticks);
+        int ran = 0;
+        for (int i = 0; i < ticks; i++) {
+            ran += tick();
+        }
+        return ran;
+    }
+
+    /**
+     * Removes an entity, just like when a player logs out. The pending tasks of the entity will not run,
+     * and tasks that are scheduled for the entity later are cancelled right away. Their retired callbacks run instead.
+     * @param entity the entity
+     */
+    public synchronized void retire(Entity entity) {
+        retired.add(Objects.requireNonNull(entity, "Entity cannot be null"));
+    }
+
+    /**
+     * Get the current tick. The clock starts at tick 0, and is advanced by {@link #tick()}.
+     * @return the current tick
+     */
+    public synchronized long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Get the number of tasks that are scheduled, including tasks that were cancelled but have not been removed yet.
+     * @return the number of scheduled tasks
+     */
+    public synchronized int getPendingCount() {
+        return queue.size();
+    }
+
+    private final class ManualTask implements GuiTask, Comparable<ManualTask> {
+        private final Entity entity;
+        private final boolean async;
+        private final Runnable runnable;
+        private final Runnable retired;
+        private final long period;
+        private long due, sequence;
+        private boolean cancelled;
+
+        private ManualTask(Entity entity, boolean async, Runnable runnable, Runnable retired, long period) {
+            this.entity = entity;
+            this.async = async;
+            this.runnable = runnable;
+            this.retired = retired;
+            this.period = period;
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (ManualGuiScheduler.this) {
+                cancelled = true;
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            synchronized (ManualGuiScheduler.this) {
+                return cancelled;
+            }
+        }
+
+        @Override
+        public int compareTo(ManualTask that) {
+            int result = Long.compare(this.due, that.due);
+            return result != 0 ? result : Long.compare(this.sequence, that.sequence);
+        }
+    }
+
+}
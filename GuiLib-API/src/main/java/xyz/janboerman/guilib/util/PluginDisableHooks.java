@@ -0,0 +1,46 @@
+package xyz.janboerman.guilib.util;
+
+import org.bukkit.plugin.Plugin;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Releases the state that GuiLib keeps per plugin once the plugin is disabled.
+ * Registries that are keyed by plugin add a hook when their class is initialized,
+ * and the {@link xyz.janboerman.guilib.api.GuiListener} runs the hooks when a plugin is disabled.
+ * That way disabled plugin instances, and the work and tasks they queued, don't stay reachable across reloads.
+ */
+public final class PluginDisableHooks {
+
+    private static final List<Consumer<? super Plugin>> HOOKS = new CopyOnWriteArrayList<>();
+
+    private PluginDisableHooks() {
+    }
+
+    /**
+     * Adds a hook that is run for every plugin that is disabled.
+     * @param hook the hook
+     */
+    public static void add(Consumer<? super Plugin> hook) {
+        HOOKS.add(Objects.requireNonNull(hook, "Hook cannot be null"));
+    }
+
+    /**
+     * Runs the hooks for a plugin that is being disabled.
+     * @param plugin the plugin
+     */
+    public static void run(Plugin plugin) {
+        for (Consumer<? super Plugin> hook : HOOKS) {
+            try {
+                hook.accept(plugin);
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.WARNING, "Could not release gui state of a disabled plugin", e);
+            }
+        }
+    }
+
+}
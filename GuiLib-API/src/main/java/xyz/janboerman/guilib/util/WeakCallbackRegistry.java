@@ -0,0 +1,142 @@
+package xyz.janboerman.guilib.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+
+/**
+ * A copy-on-write list of weakly referenced callbacks.
+ * <p>
+ * Iterating over the {@link #snapshot()} does not allocate and does not lock.
+ * Callbacks are removed in constant time through their {@link Handle}: removed handles are only marked,
+ * and the array is compacted once more than half of its handles were removed.
+ * Handles of callbacks that are garbage collected are drained from a {@link ReferenceQueue} on every mutation.
+ *
+ * @param <C> the callback type
+ */
+public final class WeakCallbackRegistry<C> {
+
+    @SuppressWarnings("rawtypes")
+    private static final Handle[] EMPTY = new Handle[0];
+
+    private final ReferenceQueue<C> queue = new ReferenceQueue<>();
+    @SuppressWarnings("unchecked")
+    private volatile Handle<C>[] handles = EMPTY;
+    private int garbage;
+
+    /**
+     * Add a callback.
+     * @param callback the callback
+     * @return the handle that can be used to remove the callback
+     */
+    public synchronized Handle<C> add(C callback) {
+        Objects.requireNonNull(callback, "Callback cannot be null");
+        expungeStaleHandles();
+
+        Handle<C>[] oldHandles = handles;
+        @SuppressWarnings("unchecked")
+        Handle<C>[] newHandles = new Handle[oldHandles.length + 1];
+        System.arraycopy(oldHandles, 0, newHandles, 0, oldHandles.length);
+        Handle<C> handle = new Handle<>(callback, this, queue);
+        newHandles[oldHandles.length] = handle;
+        handles = newHandles;
+        return handle;
+    }
+
+    /**
+     * Remove all handles whose callbacks are equal to the given callback.
+     * @param callback the callback
+     * @return true if a callback was removed, otherwise false
+     */
+    public synchronized boolean remove(C callback) {
+        boolean removed = false;
+        for (Handle<C> handle : handles) {
+            if (!handle.removed && callback.equals(handle.get())) {
+                markRemoved(handle);
+                removed = true;
+            }
+        }
+
+        expungeStaleHandles();
+        return removed;
+    }
+
+    /**
+     * Remove a callback by its handle.
+     * @param handle the handle
+     * @return true if the callback was removed, false if it was removed already
+     */
+    public synchronized boolean remove(Handle<C> handle) {
+        if (handle.registry != this || handle.removed) return false;
+
+        markRemoved(handle);
+        expungeStaleHandles();
+        return true;
+    }
+
+    /**
+     * Get the handles of this registry. Handles in the snapshot can have been removed, in which case {@link Handle#callback()} returns null.
+     * The returned array must not be modified.
+     * @return the current handles
+     */
+    public Handle<C>[] snapshot() {
+        return handles;
+    }
+
+    private void markRemoved(Handle<C> handle) {
+        handle.removed = true;
+        garbage += 1;
+    }
+
+    private void expungeStaleHandles() {
+        Object polled;
+        while ((polled = queue.poll()) != null) {
+            @SuppressWarnings("unchecked")
+            Handle<C> stale = (Handle<C>) polled;
+            if (!stale.removed) markRemoved(stale);
+        }
+
+        Handle<C>[] oldHandles = handles;
+        if (garbage > 0 && garbage * 2 >= oldHandles.length) {
+            @SuppressWarnings("unchecked")
+            Handle<C>[] newHandles = new Handle[oldHandles.length - garbage];
+            int size = 0;
+            for (Handle<C> handle : oldHandles) {
+                if (!handle.removed) newHandles[size++] = handle;
+            }
+            handles = newHandles;
+            garbage = 0;
+        }
+    }
+
+    /**
+     * The registration of a callback.
+     * @param <C> the callback type
+     */
+    public static final class Handle<C> extends WeakReference<C> {
+        private final WeakCallbackRegistry<C> registry;
+        private volatile boolean removed;
+
+        private Handle(C callback, WeakCallbackRegistry<C> registry, ReferenceQueue<C> queue) {
+            super(callback, queue);
+            this.registry = registry;
+        }
+
+        /**
+         * Get the callback.
+         * @return the callback, or null if it was removed or garbage collected
+         */
+        public C callback() {
+            return removed ? null : get();
+        }
+
+        /**
+         * Remove the callback from the registry.
+         * @return true if the callback was removed, false if it was removed already
+         */
+        public boolean unregister() {
+            return registry.remove(this);
+        }
+    }
+
+}
@@ -0,0 +1,226 @@
+package xyz.janboerman.guilib.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * A hash table that compares its keys by identity and that references both its keys and its values weakly.
+ * Entries whose keys are garbage collected are removed using a {@link ReferenceQueue}.
+ * <p>
+ * Lookups are lock-free and do not allocate. Mutations are synchronized on the registry,
+ * so entries can be added and removed from any thread.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public final class WeakIdentityRegistry<K, V> {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private final ReferenceQueue<K> queue = new ReferenceQueue<>();
+    private volatile AtomicReferenceArray<Entry<K, V>> table = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    private volatile int size;
+
+    /**
+     * Get the value associated with the key.
+     * @param key the key
+     * @return the value, or null if no value is associated with the key, or if the value was garbage collected
+     */
+    public V get(K key) {
+        AtomicReferenceArray<Entry<K, V>> tab = table;
+        int hash = System.identityHashCode(key);
+        for (Entry<K, V> entry = tab.get(hash & (tab.length() - 1)); entry != null; entry = entry.next) {
+            if (entry.get() == key) return entry.value.get();
+        }
+        return null;
+    }
+
+    /**
+     * Associate a value with the key, unless the key is already associated with a value that is still alive.
+     * @param key the key
+     * @param value the value
+     * @return true if the value was associated with the key, otherwise false
+     */
+    public synchronized boolean putIfAbsent(K key, V value) {
+        expungeStaleEntries();
+
+        AtomicReferenceArray<Entry<K, V>> tab = table;
+        int hash = System.identityHashCode(key);
+        int index = hash & (tab.length() - 1);
+        Entry<K, V> head = tab.get(index);
+        for (Entry<K, V> entry = head; entry != null; entry = entry.next) {
+            if (entry.get() == key) {
+                if (entry.value.get() != null) return false;
+                //the old value was garbage collected, replace the entry.
+                head = unlink(head, entry);
+                size -= 1;
+                break;
+            }
+        }
+
+        tab.set(index, new Entry<>(key, hash, new WeakReference<>(value), head, queue));
+        size += 1;
+
+        if (size > (tab.length() >> 2) * 3 && tab.length() < MAXIMUM_CAPACITY) resize();
+        return true;
+    }
+
+    /**
+     * Remove the value associated with the key.
+     * @param key the key
+     * @return the value that was associated with the key, or null if there was no such value
+     */
+    public synchronized V remove(K key) {
+        expungeStaleEntries();
+
+        AtomicReferenceArray<Entry<K, V>> tab = table;
+        int index = System.identityHashCode(key) & (tab.length() - 1);
+        Entry<K, V> head = tab.get(index);
+        for (Entry<K, V> entry = head; entry != null; entry = entry.next) {
+            if (entry.get() == key) {
+                tab.set(index, unlink(head, entry));
+                size -= 1;
+                return entry.value.get();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remove the entry for the key, but only if the key is associated with the given value.
+     * @param key the key
+     * @param value the value
+     * @return true if the entry was removed, otherwise false
+     */
+    public synchronized boolean remove(K key, V value) {
+        expungeStaleEntries();
+
+        AtomicReferenceArray<Entry<K, V>> tab = table;
+        int index = System.identityHashCode(key) & (tab.length() - 1);
+        Entry<K, V> head = tab.get(index);
+        for (Entry<K, V> entry = head; entry != null; entry = entry.next) {
+            if (entry.get() == key) {
+                if (entry.value.get() != value) return false;
+                tab.set(index, unlink(head, entry));
+                size -= 1;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove all entries whose values satisfy the predicate.
+     * @param predicate the predicate
+     * @return the number of entries that were removed because their values satisfied the predicate
+     */
+    public synchronized int removeIf(Predicate<? super V> predicate) {
+        expungeStaleEntries();
+
+        AtomicReferenceArray<Entry<K, V>> tab = table;
+        int removed = 0;
+        for (int i = 0; i < tab.length(); i++) {
+            Entry<K, V> result = null;
+            boolean changed = false;
+            for (Entry<K, V> entry = tab.get(i); entry != null; entry = entry.next) {
+                K key = entry.get();
+                V value = entry.value.get();
+                if (key == null || value == null) {
+                    size -= 1;
+                    changed = true;
+                } else if (predicate.test(value)) {
+                    size -= 1;
+                    removed += 1;
+                    changed = true;
+                } else {
+                    result = new Entry<>(key, entry.hash, entry.value, result, queue);
+                }
+            }
+            if (changed) tab.set(i, result);
+        }
+
+        return removed;
+    }
+
+    /**
+     * Get the number of entries in this registry. Entries whose keys or values were garbage collected recently may still be counted.
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    private void expungeStaleEntries() {
+        Object polled;
+        while ((polled = queue.poll()) != null) {
+            @SuppressWarnings("unchecked")
+            Entry<K, V> stale = (Entry<K, V>) polled;
+
+            AtomicReferenceArray<Entry<K, V>> tab = table;
+            int index = stale.hash & (tab.length() - 1);
+            Entry<K, V> head = tab.get(index);
+            for (Entry<K, V> entry = head; entry != null; entry = entry.next) {
+                if (entry == stale) {
+                    tab.set(index, unlink(head, entry));
+                    size -= 1;
+                    break;
+                }
+            }
+            //if the entry was not found, it was already replaced by a copy during a resize or an unlink.
+        }
+    }
+
+    //entries are immutable so that readers can traverse a bucket without locking.
+    //this means that all entries in front of the unlinked entry need to be copied.
+    private Entry<K, V> unlink(Entry<K, V> head, Entry<K, V> toRemove) {
+        Entry<K, V> result = toRemove.next;
+        for (Entry<K, V> entry = head; entry != toRemove; entry = entry.next) {
+            K key = entry.get();
+            if (key != null) {
+                result = new Entry<>(key, entry.hash, entry.value, result, queue);
+            } else {
+                size -= 1; //the key was garbage collected, so we don't copy this entry.
+            }
+        }
+        return result;
+    }
+
+    private void resize() {
+        AtomicReferenceArray<Entry<K, V>> oldTable = table;
+        AtomicReferenceArray<Entry<K, V>> newTable = new AtomicReferenceArray<>(oldTable.length() << 1);
+        int mask = newTable.length() - 1;
+        int newSize = 0;
+
+        for (int i = 0; i < oldTable.length(); i++) {
+            for (Entry<K, V> entry = oldTable.get(i); entry != null; entry = entry.next) {
+                K key = entry.get();
+                if (key != null && entry.value.get() != null) {
+                    int index = entry.hash & mask;
+                    newTable.set(index, new Entry<>(key, entry.hash, entry.value, newTable.get(index), queue));
+                    newSize += 1;
+                }
+            }
+        }
+
+        //the old entries become unreachable, so they will never be enqueued.
+        table = newTable;
+        size = newSize;
+    }
+
+    private static final class Entry<K, V> extends WeakReference<K> {
+        private final int hash;
+        private final WeakReference<V> value;
+        private final Entry<K, V> next;
+
+        private Entry(K key, int hash, WeakReference<V> value, Entry<K, V> next, ReferenceQueue<K> queue) {
+            super(key, queue);
+            this.hash = hash;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package xyz.janboerman.guilib.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xyz.janboerman.guilib.api.animate.Animation;
+import xyz.janboerman.guilib.api.animate.Frame;
+import xyz.janboerman.guilib.api.util.IntBiConsumer;
+import xyz.janboerman.guilib.api.util.IntGenerator;
+import xyz.janboerman.guilib.api.util.Option;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays a marquee over a 54-slot container: the frames as they are, the frames {@link Animation#compileFrames() compiled},
+ * and the animation {@link Animation#compileDeltas(int) compiled into deltas}.
+ * <p>
+ * The {@code writes} counter is the number of slots written per second, next to the number of frames per second.
+ * With {@code sparse} frames, like the example plugin's AnimationDemo, every frame only covers the two slots that change,
+ * so deltas can't save any writes. With {@code full} frames, every frame covers the whole container.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class AnimationWritesBenchmark {
+
+    private static final int SIZE = 54;
+
+    @Param({"sparse", "full"})
+    public String coverage;
+
+    private Animation frames;
+    private Animation compiledFrames;
+    private Animation deltas;
+
+    @Setup
+    public void setup() {
+        boolean full = "full".equals(coverage);
+        List<Frame<?, ?>> marquee = new ArrayList<>(SIZE);
+        for (int active = 0; active < SIZE; active++) {
+            marquee.add(marqueeFrame(active, full));
+        }
+
+        frames = Animation.ofFrames(marquee).continuously();
+        compiledFrames = Animation.ofFrames(marquee).compileFrames().continuously();
+        deltas = Animation.ofFrames(marquee).compileDeltas(SIZE).continuously();
+    }
+
+    private static Frame<Boolean, String> marqueeFrame(int active, boolean full) {
+        IntGenerator slots = full
+                ? IntGenerator.range(0, SIZE, 1)
+                : IntGenerator.of((active + SIZE - 1) % SIZE, active);
+        return new Frame<>(index -> index == active, isActive -> Option.some(isActive ? "pufferfish" : null), slots);
+    }
+
+    @Benchmark
+    public void frames(Writes writes) {
+        frames.nextFrame().apply(writes);
+    }
+
+    @Benchmark
+    public void compiledFrames(Writes writes) {
+        compiledFrames.nextFrame().apply(writes);
+    }
+
+    @Benchmark
+    public void deltas(Writes writes) {
+        deltas.nextFrame().apply(writes);
+    }
+
+    /**
+     * A container that counts the writes to its slots.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Writes implements IntBiConsumer<Object> {
+
+        public long writes;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            writes = 0L;
+        }
+
+        @Override
+        public void accept(int slot, Object item) {
+            writes += 1;
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package xyz.janboerman.guilib.benchmark;
+
+import org.bukkit.Material;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xyz.janboerman.guilib.api.GuiListener;
+import xyz.janboerman.guilib.api.menu.ItemButton;
+import xyz.janboerman.guilib.api.menu.MenuHolder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a click on a menu, from {@link GuiListener#onInventoryClick(InventoryClickEvent)} to {@link ItemButton#onClick(MenuHolder, InventoryClickEvent)}.
+ * <p>
+ * Run it with {@code -prof gc}: GuiLib should not allocate while dispatching a click,
+ * so {@code gc.alloc.rate.norm} should be close to 0 bytes per operation for every benchmark in this class.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ClickDispatchBenchmark {
+
+    private final GuiListener guiListener = GuiListener.getInstance();
+
+    private MenuHolder<Plugin> menu;
+    private CountingButton button;
+    private InventoryClickEvent buttonClick;
+    private InventoryClickEvent emptySlotClick;
+    private InventoryClickEvent outsideClick;
+
+    @Setup
+    public void setup() {
+        menu = new MenuHolder<>(Fakes.plugin(), 54);
+        button = new CountingButton(new ItemStack(Material.STONE));
+        menu.setButton(0, button);
+
+        buttonClick = Fakes.click(menu.getInventory(), 0);
+        emptySlotClick = Fakes.click(menu.getInventory(), 53);
+        outsideClick = Fakes.click(menu.getInventory(), -999);
+    }
+
+    @Benchmark
+    public long buttonClick() {
+        guiListener.onInventoryClick(buttonClick);
+        return button.clicks;
+    }
+
+    @Benchmark
+    public boolean emptySlotClick() {
+        guiListener.onInventoryClick(emptySlotClick);
+        return emptySlotClick.isCancelled();
+    }
+
+    @Benchmark
+    public boolean outsideClick() {
+        guiListener.onInventoryClick(outsideClick);
+        return outsideClick.isCancelled();
+    }
+
+    private static final class CountingButton extends ItemButton<MenuHolder<Plugin>> {
+        private long clicks;
+
+        private CountingButton(ItemStack icon) {
+            super(icon);
+        }
+
+        @Override
+        public void onClick(MenuHolder<Plugin> holder, InventoryClickEvent event) {
+            clicks += 1;
+        }
+    }
+
+}
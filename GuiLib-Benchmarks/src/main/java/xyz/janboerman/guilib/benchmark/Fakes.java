@@ -0,0 +1,174 @@
+package xyz.janboerman.guilib.benchmark;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.InventoryAction;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.InventoryView;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Just enough of a server to create guis and call inventory events outside of Minecraft.
+ * The fakes are dynamic proxies, so calls on them are slower than calls on CraftBukkit's classes.
+ * Compare the benchmarks with each other, rather than with timings of a real server.
+ */
+final class Fakes {
+
+    private static final Logger LOGGER = Logger.getLogger("GuiLib-Benchmarks");
+    private static final Server SERVER = fake(Server.class, (proxy, method, args) -> {
+        switch (method.getName()) {
+            case "createInventory":
+                InventoryHolder holder = (InventoryHolder) args[0];
+                return args[1] instanceof InventoryType
+                        ? inventory(holder, (InventoryType) args[1], ((InventoryType) args[1]).getDefaultSize(), 0L)
+                        : inventory(holder, InventoryType.CHEST, (Integer) args[1], 0L);
+            case "isPrimaryThread":
+                return true;
+            default:
+                return standard(proxy, method, args);
+        }
+    });
+    private static final HumanEntity PLAYER = fake(HumanEntity.class, Fakes::standard);
+    private static final Inventory PLAYER_INVENTORY = inventory(PLAYER, InventoryType.PLAYER, 36, 0L);
+
+    static {
+        //bukkit's events and item stacks may ask the server about the current thread or the item factory.
+        if (Bukkit.getServer() == null) Bukkit.setServer(SERVER);
+    }
+
+    private Fakes() {}
+
+    /**
+     * Get a plugin that is enabled, whose server creates fake inventories.
+     * @return the plugin
+     */
+    static Plugin plugin() {
+        return fake(Plugin.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "isEnabled":
+                    return true;
+                case "getServer":
+                    return SERVER;
+                default:
+                    return standard(proxy, method, args);
+            }
+        });
+    }
+
+    /**
+     * Get an inventory that is not a gui, such as the inventory of a chest.
+     * @param type the inventory type
+     * @param size the inventory size
+     * @param holderTokens the cpu time that {@link Inventory#getHolder()} takes, see {@link Blackhole#consumeCPU(long)}.
+     *                     CraftBukkit creates a snapshot of the block for the inventories of blocks, which is expensive.
+     * @return the inventory
+     */
+    static Inventory blockInventory(InventoryType type, int size, long holderTokens) {
+        InventoryHolder block = fake(InventoryHolder.class, Fakes::standard);
+        return inventory(block, type, size, holderTokens);
+    }
+
+    private static Inventory inventory(InventoryHolder holder, InventoryType type, int size, long holderTokens) {
+        return fake(Inventory.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getHolder":
+                    if (holderTokens > 0L) Blackhole.consumeCPU(holderTokens);
+                    return holder;
+                case "getType":
+                    return type;
+                case "getSize":
+                    return size;
+                default:
+                    return standard(proxy, method, args);
+            }
+        });
+    }
+
+    /**
+     * Create a left click on a slot of an inventory, as if the fake player clicked it while viewing the inventory.
+     * @param top the inventory that is viewed
+     * @param rawSlot the raw slot, or -999 for a click outside of the inventory window
+     * @return the event
+     */
+    static InventoryClickEvent click(Inventory top, int rawSlot) {
+        InventoryType.SlotType slotType = rawSlot < 0 ? InventoryType.SlotType.OUTSIDE : InventoryType.SlotType.CONTAINER;
+        return new InventoryClickEvent(new FakeView(top), slotType, rawSlot, ClickType.LEFT, InventoryAction.PICKUP_ALL);
+    }
+
+    private static <T> T fake(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(Fakes.class.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    //fakes are compared by identity, and answer every other call with a default value.
+    private static Object standard(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "Fake" + proxy.getClass().getInterfaces()[0].getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+            case "getLogger":
+                return LOGGER;
+        }
+
+        Class<?> returnType = method.getReturnType();
+        if (returnType == boolean.class) return false;
+        if (returnType == int.class) return 0;
+        if (returnType == long.class) return 0L;
+        if (returnType == double.class) return 0D;
+        if (returnType == float.class) return 0F;
+        if (returnType == short.class) return (short) 0;
+        if (returnType == byte.class) return (byte) 0;
+        if (returnType == char.class) return '\0';
+        if (returnType == List.class) return List.of();
+        if (returnType == String.class) return "GuiLib-Benchmarks";
+        return null;
+    }
+
+    private static final class FakeView extends InventoryView {
+        private final Inventory top;
+
+        private FakeView(Inventory top) {
+            this.top = top;
+        }
+
+        @Override
+        public Inventory getTopInventory() {
+            return top;
+        }
+
+        @Override
+        public Inventory getBottomInventory() {
+            return PLAYER_INVENTORY;
+        }
+
+        @Override
+        public HumanEntity getPlayer() {
+            return PLAYER;
+        }
+
+        @Override
+        public InventoryType getType() {
+            return top.getType();
+        }
+
+        @Override
+        public String getTitle() {
+            return "GuiLib-Benchmarks";
+        }
+    }
+
+}
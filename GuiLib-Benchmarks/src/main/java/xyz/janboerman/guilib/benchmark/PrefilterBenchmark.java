@@ -0,0 +1,66 @@
+package xyz.janboerman.guilib.benchmark;
+
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xyz.janboerman.guilib.api.GuiListener;
+import xyz.janboerman.guilib.api.menu.MenuHolder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what GuiListener spends on clicks in inventories that are not guis.
+ * <p>
+ * A 27-slot chest gui is registered, so clicks in a furnace are rejected by the type/size pre-filter,
+ * while clicks in a 27-slot chest pass it and look up the holder of the inventory, just like they did before there was a pre-filter.
+ * The difference between the two is what the pre-filter saves per rejected event.
+ * {@link #holderTokens} sets how expensive {@link org.bukkit.inventory.Inventory#getHolder()} is, which depends on the kind of block on a real server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PrefilterBenchmark {
+
+    @Param({"0", "100", "1000"})
+    public long holderTokens;
+
+    private final GuiListener guiListener = GuiListener.getInstance();
+
+    private MenuHolder<Plugin> gui; //keeps the registered shape alive
+    private InventoryClickEvent furnaceClick;
+    private InventoryClickEvent chestClick;
+
+    @Setup
+    public void setup() {
+        gui = new MenuHolder<>(Fakes.plugin(), 27);
+        furnaceClick = Fakes.click(Fakes.blockInventory(InventoryType.FURNACE, 3, holderTokens), 0);
+        chestClick = Fakes.click(Fakes.blockInventory(InventoryType.CHEST, 27, holderTokens), 0);
+    }
+
+    @Benchmark
+    public boolean rejectedByPrefilter() {
+        guiListener.onInventoryClick(furnaceClick);
+        return furnaceClick.isCancelled();
+    }
+
+    @Benchmark
+    public boolean passedPrefilter() {
+        guiListener.onInventoryClick(chestClick);
+        return chestClick.isCancelled();
+    }
+
+}
@@ -0,0 +1,108 @@
+package xyz.janboerman.guilib.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xyz.janboerman.guilib.util.WeakIdentityRegistry;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the lookups of the {@link WeakIdentityRegistry} that GuiListener uses for its gui inventories
+ * with the {@link WeakHashMap} of weak references that it used before, with and without the lock that made it safe to use from multiple threads.
+ * <p>
+ * The keys mimic CraftInventory, whose equals and hashCode delegate to the wrapped container.
+ * At least half of the lookups are for inventories that are not registered, like the inventories of chests and furnaces.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RegistryBenchmark {
+
+    @Param({"100", "10000"})
+    public int liveGuis;
+
+    private final WeakIdentityRegistry<FakeInventory, Object> registry = new WeakIdentityRegistry<>();
+    private final WeakHashMap<FakeInventory, WeakReference<Object>> weakHashMap = new WeakHashMap<>();
+
+    //the keys and values are kept here, so that they are not garbage collected during the benchmark.
+    private FakeInventory[] lookups;
+    private Object[] holders;
+    private int next;
+
+    @Setup
+    public void setup() {
+        int length = Integer.highestOneBit(liveGuis * 2 - 1) * 2; //a power of two, at least twice the number of guis
+        lookups = new FakeInventory[length];
+        holders = new Object[liveGuis];
+        for (int i = 0; i < length; i++) {
+            FakeInventory inventory = new FakeInventory(new Object());
+            lookups[i] = inventory;
+            if (i % 2 == 0 && i / 2 < liveGuis) {
+                Object holder = new Object();
+                holders[i / 2] = holder;
+                registry.putIfAbsent(inventory, holder);
+                weakHashMap.put(inventory, new WeakReference<>(holder));
+            }
+        }
+    }
+
+    private FakeInventory nextInventory() {
+        return lookups[next++ & (lookups.length - 1)];
+    }
+
+    @Benchmark
+    public Object weakIdentityRegistry() {
+        return registry.get(nextInventory());
+    }
+
+    @Benchmark
+    public Object weakHashMap() {
+        WeakReference<Object> reference = weakHashMap.get(nextInventory());
+        return reference == null ? null : reference.get();
+    }
+
+    @Benchmark
+    public Object weakHashMapSynchronized() {
+        FakeInventory inventory = nextInventory();
+        WeakReference<Object> reference;
+        //GuiListener could only use its WeakHashMap from the main thread, this is the cost of using it from any thread.
+        synchronized (weakHashMap) {
+            reference = weakHashMap.get(inventory);
+        }
+        return reference == null ? null : reference.get();
+    }
+
+    //like CraftInventory: equal when the wrapped containers are equal.
+    private static final class FakeInventory {
+        private final Object container;
+
+        private FakeInventory(Object container) {
+            this.container = container;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof FakeInventory && ((FakeInventory) obj).container.equals(this.container);
+        }
+
+        @Override
+        public int hashCode() {
+            return container.hashCode();
+        }
+    }
+
+}
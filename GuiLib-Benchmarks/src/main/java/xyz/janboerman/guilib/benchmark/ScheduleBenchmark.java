@@ -0,0 +1,94 @@
+package xyz.janboerman.guilib.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xyz.janboerman.guilib.api.animate.Schedule;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a single step of a {@link Schedule}: through {@link Schedule#next()}, through {@link Schedule#nextDelay()},
+ * and through {@link Schedule#nextDelay()} of the {@link Schedule#compile() compiled} schedule.
+ * <p>
+ * The schedules repeat forever. {@code zeroDelayRuns} serves seven frames in the same tick before it waits a tick,
+ * which is the case in which an animation runner steps the schedule many times per tick.
+ * {@code nested} wraps a schedule in several layers, each of which is a call per step when the schedule is not compiled.
+ * Run it with {@code -prof gc} to see whether {@link Schedule#next()} allocates its OptionalLongs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ScheduleBenchmark {
+
+    private static final int STEPS = 1024;
+
+    @Param({"fixedRate", "zeroDelayRuns", "nested"})
+    public String shape;
+
+    private Schedule schedule;
+    private Schedule compiled;
+
+    @Setup
+    public void setup() {
+        switch (shape) {
+            case "fixedRate":
+                schedule = Schedule.fixedRate(1L);
+                break;
+            case "zeroDelayRuns":
+                schedule = Schedule.of(0L, 0L, 0L, 0L, 0L, 0L, 0L, 1L).repeat();
+                break;
+            case "nested":
+                schedule = Schedule.of(5L, 2L).append(Schedule.fixedRate(1L).limitSteps(20L)).repeat();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown shape: " + shape);
+        }
+
+        compiled = schedule.compile();
+        if (compiled == schedule) throw new IllegalStateException("Schedule " + shape + " could not be compiled");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public long next() {
+        long ticks = 0L;
+        for (int i = 0; i < STEPS; i++) {
+            ticks += schedule.next().getAsLong();
+        }
+        return ticks;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public long nextDelay() {
+        long ticks = 0L;
+        for (int i = 0; i < STEPS; i++) {
+            ticks += schedule.nextDelay();
+        }
+        return ticks;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public long compiledNextDelay() {
+        long ticks = 0L;
+        for (int i = 0; i < STEPS; i++) {
+            ticks += compiled.nextDelay();
+        }
+        return ticks;
+    }
+
+}
@@ -12,6 +12,7 @@ import xyz.janboerman.guilib.api.GuiListener;
  * <p>
  * When used as a compile time dependency, be sure to shade the classes into your jar and relocate them.
  * Then you need to register the {@link GuiListener} in your onEnable.
+ * Using {@link GuiListener#registerFederated(org.bukkit.plugin.Plugin)} lets all copies of GuiLib on the server share a single listener.
  *
  * @see xyz.janboerman.guilib.api.GuiInventoryHolder
  */
@@ -21,10 +22,12 @@ public class GuiLibrary extends JavaPlugin {
 
     /**
      * Registers the {@link GuiListener}. This method is only called when GuiLib is used as a runtime dependency.
+     * The listener is published as a federation dispatcher, so that shaded copies of GuiLib can forward their guis to it.
      */
     @Override
     public void onEnable() {
-        getServer().getPluginManager().registerEvents(guiListener = GuiListener.getInstance(), this);
+        guiListener = GuiListener.getInstance();
+        guiListener.registerFederated(this);
     }
 
     /**